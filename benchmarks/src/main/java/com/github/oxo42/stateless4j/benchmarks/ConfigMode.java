@@ -0,0 +1,40 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.EnumStateMachineConfig;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+
+/**
+ * How a benchmark configuration is prepared before machines are created from it
+ */
+public enum ConfigMode {
+
+    /**
+     * A plain, mutable {@link StateMachineConfig}
+     */
+    PLAIN,
+
+    /**
+     * A {@link StateMachineConfig} that has been frozen
+     */
+    FROZEN,
+
+    /**
+     * A frozen {@link EnumStateMachineConfig}. Only applicable to enum states and triggers.
+     */
+    ENUM;
+
+    <S extends Enum<S>, T extends Enum<T>> StateMachineConfig<S, T> create(Class<S> stateClass, Class<T> triggerClass) {
+        return this == ENUM ? new EnumStateMachineConfig<>(stateClass, triggerClass) : new StateMachineConfig<S, T>();
+    }
+
+    <S, T> StateMachineConfig<S, T> create() {
+        if (this == ENUM) {
+            throw new IllegalArgumentException("ENUM mode requires enum states and triggers");
+        }
+        return new StateMachineConfig<>();
+    }
+
+    <S, T> StateMachineConfig<S, T> prepare(StateMachineConfig<S, T> config) {
+        return this == PLAIN ? config : config.freeze();
+    }
+}
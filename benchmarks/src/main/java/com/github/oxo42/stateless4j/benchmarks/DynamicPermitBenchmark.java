@@ -0,0 +1,78 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import com.github.oxo42.stateless4j.delegates.Func;
+import com.github.oxo42.stateless4j.delegates.Func2;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters1;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transitions whose destination is computed when the trigger is fired, either from machine-external
+ * data or from a trigger parameter. Such transitions cannot use precomputed transition paths.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DynamicPermitBenchmark {
+
+    public enum S {
+        ROUTER, LEFT, RIGHT
+    }
+
+    public enum T {
+        ROUTE, ROUTE_BY, BACK
+    }
+
+    @Param({"PLAIN", "FROZEN", "ENUM"})
+    public ConfigMode mode;
+
+    private StateMachine<S, T> machine;
+    private TriggerWithParameters1<Boolean, T> routeBy;
+    private boolean left;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<S, T> config = mode.create(S.class, T.class);
+        routeBy = config.setTriggerParameters(T.ROUTE_BY, Boolean.class);
+        config.configure(S.ROUTER)
+                .permitDynamic(T.ROUTE, new Func<S>() {
+                    @Override
+                    public S call() {
+                        return left ? S.LEFT : S.RIGHT;
+                    }
+                })
+                .permitDynamic(routeBy, new Func2<Boolean, S>() {
+                    @Override
+                    public S call(Boolean toLeft) {
+                        return toLeft ? S.LEFT : S.RIGHT;
+                    }
+                });
+        config.configure(S.LEFT)
+                .permit(T.BACK, S.ROUTER);
+        config.configure(S.RIGHT)
+                .permit(T.BACK, S.ROUTER);
+        machine = new StateMachine<>(S.ROUTER, mode.prepare(config));
+    }
+
+    @Benchmark
+    public S fireDynamic() {
+        left = !left;
+        machine.fire(T.ROUTE);
+        machine.fire(T.BACK);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public S fireDynamicWithParameter() {
+        left = !left;
+        machine.fire(routeBy, left);
+        machine.fire(T.BACK);
+        return machine.getState();
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A flat machine with enum states and triggers: the most common and cheapest case.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FlatEnumBenchmark {
+
+    public enum S {
+        IDLE, RUNNING, PAUSED, STOPPED
+    }
+
+    public enum T {
+        START, PAUSE, RESUME, STOP, RESET
+    }
+
+    @Param({"PLAIN", "FROZEN", "ENUM"})
+    public ConfigMode mode;
+
+    private StateMachine<S, T> machine;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<S, T> config = mode.create(S.class, T.class);
+        config.configure(S.IDLE)
+                .permit(T.START, S.RUNNING)
+                .ignore(T.RESET);
+        config.configure(S.RUNNING)
+                .permit(T.PAUSE, S.PAUSED)
+                .permit(T.STOP, S.STOPPED);
+        config.configure(S.PAUSED)
+                .permit(T.RESUME, S.RUNNING)
+                .permit(T.STOP, S.STOPPED);
+        config.configure(S.STOPPED)
+                .permit(T.RESET, S.IDLE);
+        machine = new StateMachine<>(S.IDLE, mode.prepare(config));
+    }
+
+    @Benchmark
+    public S fireCycle() {
+        machine.fire(T.START);
+        machine.fire(T.PAUSE);
+        machine.fire(T.RESUME);
+        machine.fire(T.STOP);
+        machine.fire(T.RESET);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public S fireIgnored() {
+        machine.fire(T.RESET);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public boolean canFire() {
+        return machine.canFire(T.START);
+    }
+
+    @Benchmark
+    public List<T> permittedTriggers() {
+        return machine.getPermittedTriggers();
+    }
+}
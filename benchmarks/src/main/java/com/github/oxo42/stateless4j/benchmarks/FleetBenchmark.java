@@ -0,0 +1,157 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.DirectStateStore;
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import com.github.oxo42.stateless4j.StateMachineFleet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many entities following the same lifecycle, kept either as one {@link StateMachine} each or as a
+ * {@link StateMachineFleet} storing states on or off the heap.
+ * <p>
+ * {@code broadcast} fires one trigger on every entity, in bulk for fleets. The retained heap per entity is
+ * printed when the entities are created. {@code fullGc} times a full
+ * collection with all entities live, showing how much the representation adds to GC work.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class FleetBenchmark {
+
+    public enum S {
+        CREATED, ACTIVE, SUSPENDED, CLOSED
+    }
+
+    public enum T {
+        ACTIVATE, SUSPEND, RESUME, CLOSE, REOPEN
+    }
+
+    public enum Storage {
+        MACHINES, HEAP_FLEET, DIRECT_FLEET
+    }
+
+    @Param({"MACHINES", "HEAP_FLEET", "DIRECT_FLEET"})
+    public Storage storage;
+
+    @Param({"1000000"})
+    public int entities;
+
+    private static final T[] CYCLE = {T.ACTIVATE, T.SUSPEND, T.RESUME, T.CLOSE, T.REOPEN};
+
+    private StateMachine<S, T>[] machines;
+    private StateMachineFleet<S, T> fleet;
+    private int next = 1;
+    private int round;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        StateMachineConfig<S, T> config = lifecycle();
+
+        long before = usedHeap();
+        switch (storage) {
+            case MACHINES:
+                machines = new StateMachine[entities];
+                for (int i = 0; i < entities; i++) {
+                    machines[i] = new StateMachine<>(S.CREATED, config);
+                }
+                break;
+            case HEAP_FLEET:
+                fleet = new StateMachineFleet<>(entities, S.CREATED, config);
+                break;
+            case DIRECT_FLEET:
+                fleet = new StateMachineFleet<>(new DirectStateStore(entities, S.values().length), S.CREATED, config);
+                break;
+        }
+        long retained = usedHeap() - before;
+        System.out.printf("%n%s: %d entities retain %.1f heap bytes each%n", storage, entities, (double) retained / entities);
+    }
+
+    /**
+     * A lifecycle in which every trigger is either permitted or ignored in every state, so that any
+     * sequence of triggers can be replayed.
+     *
+     * @return The frozen configuration
+     */
+    static StateMachineConfig<S, T> lifecycle() {
+        StateMachineConfig<S, T> config = new StateMachineConfig<>();
+        config.configure(S.CREATED)
+                .permit(T.ACTIVATE, S.ACTIVE)
+                .ignore(T.SUSPEND)
+                .ignore(T.RESUME)
+                .ignore(T.CLOSE)
+                .ignore(T.REOPEN);
+        config.configure(S.ACTIVE)
+                .permit(T.SUSPEND, S.SUSPENDED)
+                .permit(T.CLOSE, S.CLOSED)
+                .ignore(T.ACTIVATE)
+                .ignore(T.RESUME)
+                .ignore(T.REOPEN);
+        config.configure(S.SUSPENDED)
+                .permit(T.RESUME, S.ACTIVE)
+                .permit(T.CLOSE, S.CLOSED)
+                .ignore(T.ACTIVATE)
+                .ignore(T.SUSPEND)
+                .ignore(T.REOPEN);
+        config.configure(S.CLOSED)
+                .permit(T.REOPEN, S.CREATED)
+                .ignore(T.ACTIVATE)
+                .ignore(T.SUSPEND)
+                .ignore(T.RESUME)
+                .ignore(T.CLOSE);
+        return config.freeze();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public int fireRandomEntity() {
+        // xorshift keeps the entity sequence pseudo-random without allocating
+        int x = next;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        next = x;
+        int entity = (x & Integer.MAX_VALUE) % entities;
+        T trigger = CYCLE[(x >>> 8) % CYCLE.length];
+        if (fleet != null) {
+            fleet.fire(entity, trigger);
+        } else {
+            machines[entity].fire(trigger);
+        }
+        return entity;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void broadcast() {
+        T trigger = CYCLE[round++ % CYCLE.length];
+        if (fleet != null) {
+            fleet.fireAll(trigger);
+        } else {
+            for (StateMachine<S, T> machine : machines) {
+                machine.fire(trigger);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void fullGc() {
+        System.gc();
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.FlightRecorder;
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The flat enum machine of {@link FlatEnumBenchmark}, with and without a flight recorder, to measure the
+ * cost of recording every fire.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FlightRecorderBenchmark {
+
+    public enum S {
+        IDLE, RUNNING, PAUSED, STOPPED
+    }
+
+    public enum T {
+        START, PAUSE, RESUME, STOP, RESET
+    }
+
+    @Param({"FROZEN", "ENUM"})
+    public ConfigMode mode;
+
+    @Param({"false", "true"})
+    public boolean record;
+
+    private StateMachine<S, T> machine;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<S, T> config = mode.create(S.class, T.class);
+        config.configure(S.IDLE)
+                .permit(T.START, S.RUNNING)
+                .ignore(T.RESET);
+        config.configure(S.RUNNING)
+                .permit(T.PAUSE, S.PAUSED)
+                .permit(T.STOP, S.STOPPED);
+        config.configure(S.PAUSED)
+                .permit(T.RESUME, S.RUNNING)
+                .permit(T.STOP, S.STOPPED);
+        config.configure(S.STOPPED)
+                .permit(T.RESET, S.IDLE);
+        machine = new StateMachine<>(S.IDLE, mode.prepare(config));
+        if (record) {
+            machine.setFlightRecorder(new FlightRecorder<S, T>(4096));
+        }
+    }
+
+    @Benchmark
+    public S fireCycle() {
+        machine.fire(T.START);
+        machine.fire(T.PAUSE);
+        machine.fire(T.RESUME);
+        machine.fire(T.STOP);
+        machine.fire(T.RESET);
+        return machine.getState();
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.GuardEvaluationPolicy;
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One trigger with several mutually exclusive guarded branches. Every fire evaluates the guards of all
+ * branches unless the first-match policy is used.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GuardedPermitBenchmark {
+
+    public enum S {
+        CHOOSING, B0, B1, B2, B3, B4, B5, B6, B7
+    }
+
+    public enum T {
+        GO, BACK
+    }
+
+    @Param({"PLAIN", "FROZEN", "ENUM"})
+    public ConfigMode mode;
+
+    @Param({"STRICT", "FIRST_MATCH"})
+    public GuardEvaluationPolicy policy;
+
+    @Param({"2", "8"})
+    public int branches;
+
+    private StateMachine<S, T> machine;
+    private int selected;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<S, T> config = mode.create(S.class, T.class);
+        config.setGuardEvaluationPolicy(policy);
+        S[] states = S.values();
+        for (int i = 0; i < branches; i++) {
+            final int branch = i;
+            S destination = states[i + 1];
+            config.configure(S.CHOOSING)
+                    .permitIf(T.GO, destination, new FuncBoolean() {
+                        @Override
+                        public boolean call() {
+                            return selected == branch;
+                        }
+                    });
+            config.configure(destination)
+                    .permit(T.BACK, S.CHOOSING);
+        }
+        machine = new StateMachine<>(S.CHOOSING, mode.prepare(config));
+    }
+
+    @Benchmark
+    public S fireRoundTrip() {
+        selected = (selected + 1) % branches;
+        machine.fire(T.GO);
+        machine.fire(T.BACK);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public boolean canFire() {
+        return machine.canFire(T.GO);
+    }
+
+    @Benchmark
+    public List<T> permittedTriggers() {
+        return machine.getPermittedTriggers();
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import com.github.oxo42.stateless4j.delegates.Action;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two branches of nested superstates under a common root. Transitions between the two leaves exit and
+ * enter every level; inherited triggers are handled by the root.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HierarchyBenchmark {
+
+    private static final String ROOT = "root";
+    private static final String CROSS = "cross";
+    private static final String PING = "ping";
+
+    @Param({"PLAIN", "FROZEN"})
+    public ConfigMode mode;
+
+    @Param({"1", "6"})
+    public int depth;
+
+    private StateMachine<String, String> machine;
+    private long actions;
+
+    private final Action countAction = new Action() {
+        @Override
+        public void doIt() {
+            actions++;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<String, String> config = mode.create();
+        config.configure(ROOT)
+                .ignore(PING);
+        String left = branch(config, "left");
+        String right = branch(config, "right");
+        config.configure(left)
+                .permit(CROSS, right);
+        config.configure(right)
+                .permit(CROSS, left);
+        machine = new StateMachine<>(left, mode.prepare(config));
+    }
+
+    private String branch(StateMachineConfig<String, String> config, String name) {
+        String parent = ROOT;
+        for (int level = 1; level <= depth; level++) {
+            String state = name + "-" + level;
+            config.configure(state)
+                    .substateOf(parent)
+                    .onEntry(countAction)
+                    .onExit(countAction);
+            parent = state;
+        }
+        return parent;
+    }
+
+    @Benchmark
+    public long crossTransition() {
+        machine.fire(CROSS);
+        return actions;
+    }
+
+    @Benchmark
+    public String inheritedTrigger() {
+        machine.fire(PING);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public boolean isInRoot() {
+        return machine.isInState(ROOT);
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.delegates.Action3;
+import com.github.oxo42.stateless4j.delegates.ActionLong;
+import com.github.oxo42.stateless4j.triggers.LongTrigger;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters1;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters2;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters3;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Triggers carrying one, two and three arguments that are validated and handed to entry actions, with and
+ * without reused argument frames, and a primitive {@code long} trigger fired without boxing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParameterizedTriggerBenchmark {
+
+    public enum S {
+        WAITING, ONE, TWO, THREE, PRIMITIVE
+    }
+
+    public enum T {
+        ONE, TWO, THREE, PRIMITIVE, BACK
+    }
+
+    @Param({"PLAIN", "FROZEN", "ENUM"})
+    public ConfigMode mode;
+
+    @Param({"false", "true"})
+    public boolean reuseFrames;
+
+    private StateMachine<S, T> machine;
+    private TriggerWithParameters1<String, T> one;
+    private TriggerWithParameters2<String, Long, T> two;
+    private TriggerWithParameters3<String, Long, Double, T> three;
+    private LongTrigger<T> primitive;
+    private long received;
+
+    private final Long sequence = 42L;
+    private final Double price = 1.5;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<S, T> config = mode.create(S.class, T.class);
+        one = config.setTriggerParameters(T.ONE, String.class);
+        two = config.setTriggerParameters(T.TWO, String.class, Long.class);
+        three = config.setTriggerParameters(T.THREE, String.class, Long.class, Double.class);
+        primitive = config.setLongTriggerParameter(T.PRIMITIVE);
+
+        config.configure(S.WAITING)
+                .permit(T.ONE, S.ONE)
+                .permit(T.TWO, S.TWO)
+                .permit(T.THREE, S.THREE)
+                .permit(T.PRIMITIVE, S.PRIMITIVE);
+        config.configure(S.ONE)
+                .onEntryFrom(one, new Action1<String>() {
+                    @Override
+                    public void doIt(String symbol) {
+                        received += symbol.length();
+                    }
+                })
+                .permit(T.BACK, S.WAITING);
+        config.configure(S.TWO)
+                .onEntryFrom(two, new Action2<String, Long>() {
+                    @Override
+                    public void doIt(String symbol, Long sequence) {
+                        received += sequence;
+                    }
+                })
+                .permit(T.BACK, S.WAITING);
+        config.configure(S.THREE)
+                .onEntryFrom(three, new Action3<String, Long, Double>() {
+                    @Override
+                    public void doIt(String symbol, Long sequence, Double price) {
+                        received += (long) (sequence * price);
+                    }
+                })
+                .permit(T.BACK, S.WAITING);
+        config.configure(S.PRIMITIVE)
+                .onEntryFrom(primitive, new ActionLong() {
+                    @Override
+                    public void doIt(long sequence) {
+                        received += sequence;
+                    }
+                })
+                .permit(T.BACK, S.WAITING);
+        machine = new StateMachine<>(S.WAITING, mode.prepare(config));
+        machine.setReuseArgumentFrames(reuseFrames);
+    }
+
+    @Benchmark
+    public long fireOneArgument() {
+        machine.fire(one, "ACME");
+        machine.fire(T.BACK);
+        return received;
+    }
+
+    @Benchmark
+    public long fireTwoArguments() {
+        machine.fire(two, "ACME", sequence);
+        machine.fire(T.BACK);
+        return received;
+    }
+
+    @Benchmark
+    public long fireThreeArguments() {
+        machine.fire(three, "ACME", sequence, price);
+        machine.fire(T.BACK);
+        return received;
+    }
+
+    @Benchmark
+    public long firePrimitiveArgument() {
+        // a value outside the Long cache, which would allocate if it were boxed
+        machine.fire(primitive, received + 1_000);
+        machine.fire(T.BACK);
+        return received;
+    }
+}
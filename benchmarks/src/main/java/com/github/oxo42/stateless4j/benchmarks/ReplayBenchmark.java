@@ -0,0 +1,69 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachineFleet;
+import com.github.oxo42.stateless4j.benchmarks.FleetBenchmark.S;
+import com.github.oxo42.stateless4j.benchmarks.FleetBenchmark.T;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a batch of events on a fleet, one at a time or in parallel on a fork/join pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+
+    @Param({"100000"})
+    public int entities;
+
+    @Param({"1000000"})
+    public int events;
+
+    @Param({"4"})
+    public int threads;
+
+    private StateMachineFleet<S, T> fleet;
+    private int[] instances;
+    private T[] triggers;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        fleet = new StateMachineFleet<>(entities, S.CREATED, FleetBenchmark.lifecycle());
+        instances = new int[events];
+        triggers = new T[events];
+        Random random = new Random(42);
+        T[] all = T.values();
+        for (int i = 0; i < events; i++) {
+            instances[i] = random.nextInt(entities);
+            triggers[i] = all[random.nextInt(all.length)];
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public StateMachineFleet<S, T> serial() {
+        for (int i = 0; i < events; i++) {
+            fleet.fire(instances[i], triggers[i]);
+        }
+        return fleet;
+    }
+
+    @Benchmark
+    public StateMachineFleet<S, T> parallel() {
+        fleet.fireInParallel(instances, triggers, pool);
+        return fleet;
+    }
+}
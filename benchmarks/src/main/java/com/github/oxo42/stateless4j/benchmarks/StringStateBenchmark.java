@@ -0,0 +1,61 @@
+package com.github.oxo42.stateless4j.benchmarks;
+
+import com.github.oxo42.stateless4j.StateMachine;
+import com.github.oxo42.stateless4j.StateMachineConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A flat machine keyed by strings, as in the non-enum tests, where every lookup hashes a string.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringStateBenchmark {
+
+    private static final String STATE_A = "StateA";
+    private static final String STATE_B = "StateB";
+    private static final String STATE_C = "StateC";
+
+    private static final String TRIGGER_X = "TriggerX";
+    private static final String TRIGGER_Y = "TriggerY";
+
+    @Param({"PLAIN", "FROZEN"})
+    public ConfigMode mode;
+
+    private StateMachine<String, String> machine;
+
+    @Setup
+    public void setUp() {
+        StateMachineConfig<String, String> config = mode.create();
+        config.configure(STATE_A)
+                .permit(TRIGGER_X, STATE_B);
+        config.configure(STATE_B)
+                .permit(TRIGGER_X, STATE_C)
+                .permit(TRIGGER_Y, STATE_A);
+        config.configure(STATE_C)
+                .permit(TRIGGER_X, STATE_A);
+        machine = new StateMachine<>(STATE_A, mode.prepare(config));
+    }
+
+    @Benchmark
+    public String fire() {
+        machine.fire(TRIGGER_X);
+        return machine.getState();
+    }
+
+    @Benchmark
+    public boolean canFire() {
+        return machine.canFire(TRIGGER_Y);
+    }
+
+    @Benchmark
+    public List<String> permittedTriggers() {
+        return machine.getPermittedTriggers();
+    }
+}
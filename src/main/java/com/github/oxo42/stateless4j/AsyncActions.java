@@ -0,0 +1,126 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.delegates.Func;
+import com.github.oxo42.stateless4j.delegates.Func2;
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
+import com.github.oxo42.stateless4j.transitions.Transition;
+import com.github.oxo42.stateless4j.transitions.TransitioningTriggerBehaviour;
+import com.github.oxo42.stateless4j.triggers.TriggerBehaviour;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Adapters registering actions that complete asynchronously alongside ordinary actions.
+ * <p>
+ * {@link StateMachine#fireAsync(Object)} recognises them and waits for the returned stage before running
+ * the next action. When fired synchronously they block until their stage completes, so that actions still
+ * run one after the other.
+ */
+final class AsyncActions {
+
+    private AsyncActions() {
+    }
+
+    /**
+     * Start the exit action if it is asynchronous, or run it
+     *
+     * @return The stage of an asynchronous action, or null if the action has already completed
+     */
+    static <S, T> CompletionStage<?> exit(Action1<Transition<S, T>> action, Transition<S, T> transition) {
+        if (action instanceof Exit) {
+            return ((Exit<S, T>) action).start(transition);
+        }
+        action.doIt(transition);
+        return null;
+    }
+
+    /**
+     * Start the entry action if it is asynchronous, or run it
+     *
+     * @return The stage of an asynchronous action, or null if the action has already completed
+     */
+    static <S, T> CompletionStage<?> enter(Action2<Transition<S, T>, Object[]> action, Transition<S, T> transition, Object[] args) {
+        if (action instanceof Entry) {
+            return ((Entry<S, T>) action).start(transition);
+        }
+        action.doIt(transition, args);
+        return null;
+    }
+
+    /**
+     * Start the action of a transition if it is asynchronous, or run it
+     *
+     * @return The stage of an asynchronous action, or null if the action has already completed
+     */
+    static <S, T> CompletionStage<?> perform(TriggerBehaviour<S, T> behaviour, Object[] args) {
+        if (behaviour instanceof Transitioning) {
+            return ((Transitioning<S, T>) behaviour).start();
+        }
+        behaviour.performAction(args);
+        return null;
+    }
+
+    private static CompletionStage<?> started(CompletionStage<?> stage) {
+        if (stage == null) {
+            throw new IllegalStateException("An asynchronous action returned null instead of a CompletionStage");
+        }
+        return stage;
+    }
+
+    static final class Entry<S, T> implements Action2<Transition<S, T>, Object[]> {
+
+        private final Func2<Transition<S, T>, ? extends CompletionStage<?>> action;
+
+        Entry(Func2<Transition<S, T>, ? extends CompletionStage<?>> action) {
+            this.action = action;
+        }
+
+        CompletionStage<?> start(Transition<S, T> transition) {
+            return started(action.call(transition));
+        }
+
+        @Override
+        public void doIt(Transition<S, T> transition, Object[] args) {
+            start(transition).toCompletableFuture().join();
+        }
+    }
+
+    static final class Exit<S, T> implements Action1<Transition<S, T>> {
+
+        private final Func2<Transition<S, T>, ? extends CompletionStage<?>> action;
+
+        Exit(Func2<Transition<S, T>, ? extends CompletionStage<?>> action) {
+            this.action = action;
+        }
+
+        CompletionStage<?> start(Transition<S, T> transition) {
+            return started(action.call(transition));
+        }
+
+        @Override
+        public void doIt(Transition<S, T> transition) {
+            start(transition).toCompletableFuture().join();
+        }
+    }
+
+    static final class Transitioning<S, T> extends TransitioningTriggerBehaviour<S, T> {
+
+        private final Func<? extends CompletionStage<?>> action;
+
+        Transitioning(T trigger, S destination, FuncBoolean guard, Func<? extends CompletionStage<?>> action) {
+            super(trigger, destination, guard, null);
+            this.action = action;
+        }
+
+        CompletionStage<?> start() {
+            return started(action.call());
+        }
+
+        @Override
+        public void performAction(Object[] args) {
+            start().toCompletableFuture().join();
+        }
+    }
+}
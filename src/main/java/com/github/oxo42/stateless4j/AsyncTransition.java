@@ -0,0 +1,86 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.transitions.Transition;
+import com.github.oxo42.stateless4j.triggers.TriggerBehaviour;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs the actions of one transition in order, waiting for each asynchronous action to complete before
+ * starting the next one. Ordinary actions run back to back on the current thread; after an asynchronous
+ * action completes, the remaining ones continue on the executor.
+ * <p>
+ * The steps are the exit actions, the transition action, the state change and the entry actions, in the
+ * same order as a synchronous fire.
+ */
+final class AsyncTransition<S, T> implements Runnable {
+
+    private final TransitionPath<S, T> path;
+    private final Transition<S, T> transition;
+    private final TriggerBehaviour<S, T> behaviour;
+    private final Object[] args;
+    private final Action commit;
+    private final Action completed;
+    private final Executor executor;
+    private final CompletableFuture<FireResult> result;
+    private int step = 0;
+
+    /**
+     * @param commit    Sets the destination state; runs after the transition action
+     * @param completed Runs after the last entry action, before the result is completed
+     */
+    AsyncTransition(TransitionPath<S, T> path, Transition<S, T> transition, TriggerBehaviour<S, T> behaviour, Object[] args,
+                    Action commit, Action completed, Executor executor, CompletableFuture<FireResult> result) {
+        this.path = path;
+        this.transition = transition;
+        this.behaviour = behaviour;
+        this.args = args;
+        this.commit = commit;
+        this.completed = completed;
+        this.executor = executor;
+        this.result = result;
+    }
+
+    @Override
+    public void run() {
+        int exits = path.getExitActions().length;
+        int steps = exits + 2 + path.getEntryActions().length;
+        try {
+            while (step < steps) {
+                int current = step++;
+                CompletionStage<?> pending;
+                if (current < exits) {
+                    pending = AsyncActions.exit(path.getExitActions()[current], transition);
+                } else if (current == exits) {
+                    pending = AsyncActions.perform(behaviour, args);
+                } else if (current == exits + 1) {
+                    commit.doIt();
+                    pending = null;
+                } else {
+                    pending = AsyncActions.enter(path.getEntryActions()[current - exits - 2], transition, args);
+                }
+                if (pending != null) {
+                    pending.whenCompleteAsync(new BiConsumer<Object, Throwable>() {
+                        @Override
+                        public void accept(Object ignored, Throwable error) {
+                            if (error != null) {
+                                result.completeExceptionally(error);
+                            } else {
+                                run();
+                            }
+                        }
+                    }, executor);
+                    return;
+                }
+            }
+            completed.doIt();
+            result.complete(FireResult.HANDLED);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.delegates.Action3;
+import com.github.oxo42.stateless4j.delegates.Trace;
+import com.github.oxo42.stateless4j.transitions.Transition;
+import com.github.oxo42.stateless4j.triggers.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A state machine that can be fired from several threads at once without locking.
+ * <p>
+ * The current state is held in an {@link AtomicReference}. Firing a trigger reads the current state,
+ * resolves the handler and destination, and commits the transition with a compare-and-set; if another
+ * thread committed a transition in the meantime, the fire starts over from the new state. Consequently:
+ * <ul>
+ * <li>Guards and the destination selectors of dynamic transitions may be evaluated more than once for a
+ * single fire, and must be free of side effects.</li>
+ * <li>Transitions, including internal ones, are committed in a single order. Their exit, transition and
+ * entry actions run exactly once, after the commit, in that order and one transition at a time: the
+ * committing thread runs them unless another thread is already running actions, in which case that thread
+ * runs them before it returns. A fire made from an action runs its actions once the current transition's
+ * are done.</li>
+ * <li><b>A fire that returns normally has committed its transition, but its actions may not have run
+ * yet</b>: when another thread is running actions, the fire returns straight away and leaves its actions
+ * to that thread. Code that needs the effects of the actions must not rely on the fire having returned.</li>
+ * <li>An exception thrown by an action does not stop the actions of the transitions committed after it,
+ * which still run in order. It propagates from the fire running the actions once they are done, with any
+ * further exceptions thrown meanwhile added as suppressed.</li>
+ * <li>Ignored triggers do not change the state and commit nothing.</li>
+ * </ul>
+ * {@link #getState()} and {@link #isInState(Object)} are wait-free. Committing a transition is lock-free.
+ * {@link #canFire(Object)} and {@link #getPermittedTriggers()} never wait on other threads, but call the
+ * guards of the current state, and are only as wait-free as those guards are.
+ * <p>
+ * The configuration is frozen on construction, as it is shared by all threads.
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ */
+public class ConcurrentStateMachine<S, T> {
+
+    private static final String TRIGGER_IS_NULL = "trigger is null";
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final StateMachineConfig<S, T> config;
+    private final AtomicReference<Commit<S, T>> current;
+    private final S initialState;
+    private final AtomicBoolean isStarted = new AtomicBoolean();
+    private final AtomicBoolean applying = new AtomicBoolean();
+    // the last transition whose actions have run; only advanced by the thread holding applying
+    private volatile Commit<S, T> applied;
+    private volatile Trace<S, T> trace = null;
+    private volatile FlightRecorder<S, T> flightRecorder = null;
+
+    private volatile Action3<S, T, Object[]> unhandledTriggerAction = new Action3<S, T, Object[]>() {
+        @Override
+        public void doIt(S state, T trigger, Object[] args) {
+            throw new IllegalStateException(
+                    String.format(
+                            "No valid leaving transitions are permitted from state '%s' for trigger '%s'. Consider ignoring the trigger.",
+                            state, trigger)
+            );
+        }
+    };
+
+    /**
+     * Construct a state machine. The configuration is frozen if it is not already.
+     *
+     * @param initialState The initial state
+     * @param config       State machine configuration, without timed transitions or deferred triggers
+     * @throws IllegalStateException If the configuration has timed transitions or deferred triggers,
+     *                               which need a {@link StateMachine}
+     */
+    public ConcurrentStateMachine(S initialState, StateMachineConfig<S, T> config) {
+        assert config != null : "config is null";
+        if (config.hasTimeouts()) {
+            throw new IllegalStateException("Timed transitions are only supported by StateMachine");
+        }
+        if (config.hasDeferredTriggers()) {
+            throw new IllegalStateException("Deferred triggers are only supported by StateMachine");
+        }
+        this.config = config.freeze();
+        this.initialState = initialState;
+        this.applied = new Commit<>(representationOf(initialState), null, null, null, NO_ARGS);
+        this.current = new AtomicReference<>(applied);
+    }
+
+    /**
+     * Fire initial transition into the initial state.
+     * All super-states are entered too.
+     *
+     * This method can be called only once, before state machine is used.
+     */
+    public void fireInitialTransition() {
+        StateRepresentation<S, T> representation = current.get().target;
+        if (!representation.getUnderlyingState().equals(initialState) || !isStarted.compareAndSet(false, true)) {
+            throw new IllegalStateException("Firing initial transition after state machine has been started");
+        }
+        representation.enter(new Transition<S, T>(null, representation.getUnderlyingState(), null));
+    }
+
+    public StateMachineConfig<S, T> configuration() {
+        return config;
+    }
+
+    /**
+     * The current state
+     *
+     * @return The current state
+     */
+    public S getState() {
+        return current.get().target.getUnderlyingState();
+    }
+
+    /**
+     * The currently-permissible trigger values
+     *
+     * @return The currently-permissible trigger values
+     */
+    public List<T> getPermittedTriggers() {
+        return current.get().target.getPermittedTriggers();
+    }
+
+    /**
+     * Determine if the state machine is in the supplied state
+     *
+     * @param state The state to test for
+     * @return True if the current state is equal to, or a substate of, the supplied state
+     */
+    public boolean isInState(S state) {
+        return current.get().target.isIncludedIn(state);
+    }
+
+    /**
+     * Returns true if {@code trigger} can be fired in the current state
+     *
+     * @param trigger Trigger to test
+     * @return True if the trigger can be fired, false otherwise
+     */
+    public boolean canFire(T trigger) {
+        return current.get().target.tryFindHandler(trigger) != null;
+    }
+
+    /**
+     * Transition from the current state via the specified trigger.
+     * The target state is determined by the configuration of the current state.
+     * Actions associated with leaving the current state and entering the new one
+     * will be invoked
+     *
+     * @param trigger The trigger to fire
+     */
+    public void fire(T trigger) {
+        publicFire(trigger, NO_ARGS);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param <TArg0> Type of the first trigger argument
+     */
+    public <TArg0> void fire(TriggerWithParameters1<TArg0, T> trigger, TArg0 arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        publicFire(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param arg1    The second argument
+     * @param <TArg0> Type of the first trigger argument
+     * @param <TArg1> Type of the second trigger argument
+     */
+    public <TArg0, TArg1> void fire(TriggerWithParameters2<TArg0, TArg1, T> trigger, TArg0 arg0, TArg1 arg1) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        publicFire(trigger.getTrigger(), arg0, arg1);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param arg1    The second argument
+     * @param arg2    The third argument
+     * @param <TArg0> Type of the first trigger argument
+     * @param <TArg1> Type of the second trigger argument
+     * @param <TArg2> Type of the third trigger argument
+     */
+    public <TArg0, TArg1, TArg2> void fire(TriggerWithParameters3<TArg0, TArg1, TArg2, T> trigger, TArg0 arg0, TArg1 arg1, TArg2 arg2) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        publicFire(trigger.getTrigger(), arg0, arg1, arg2);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, passing a {@code long} argument. The argument
+     * is boxed, as the actions of the transition may run on another thread.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     */
+    public void fire(LongTrigger<T> trigger, long arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        publicFire(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, passing an {@code int} argument. The argument
+     * is boxed, as the actions of the transition may run on another thread.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     */
+    public void fire(IntTrigger<T> trigger, int arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        publicFire(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, passing a {@code double} argument. The argument
+     * is boxed, as the actions of the transition may run on another thread.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     */
+    public void fire(DoubleTrigger<T> trigger, double arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        publicFire(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like {@link #fire(Object)}, but
+     * report an unhandled trigger through the result instead of calling the unhandled trigger action.
+     *
+     * @param trigger The trigger to fire
+     * @return The outcome of firing the trigger
+     */
+    public FireResult tryFire(T trigger) {
+        return internalFire(trigger, NO_ARGS);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like
+     * {@link #fire(TriggerWithParameters1, Object)}, but report an unhandled trigger through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param <TArg0> Type of the first trigger argument
+     * @return The outcome of firing the trigger
+     */
+    public <TArg0> FireResult tryFire(TriggerWithParameters1<TArg0, T> trigger, TArg0 arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return internalFire(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like
+     * {@link #fire(TriggerWithParameters2, Object, Object)}, but report an unhandled trigger through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param arg1    The second argument
+     * @param <TArg0> Type of the first trigger argument
+     * @param <TArg1> Type of the second trigger argument
+     * @return The outcome of firing the trigger
+     */
+    public <TArg0, TArg1> FireResult tryFire(TriggerWithParameters2<TArg0, TArg1, T> trigger, TArg0 arg0, TArg1 arg1) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return internalFire(trigger.getTrigger(), arg0, arg1);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like
+     * {@link #fire(TriggerWithParameters3, Object, Object, Object)}, but report an unhandled trigger
+     * through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param arg1    The second argument
+     * @param arg2    The third argument
+     * @param <TArg0> Type of the first trigger argument
+     * @param <TArg1> Type of the second trigger argument
+     * @param <TArg2> Type of the third trigger argument
+     * @return The outcome of firing the trigger
+     */
+    public <TArg0, TArg1, TArg2> FireResult tryFire(TriggerWithParameters3<TArg0, TArg1, TArg2, T> trigger, TArg0 arg0, TArg1 arg1, TArg2 arg2) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return internalFire(trigger.getTrigger(), arg0, arg1, arg2);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like {@link #fire(LongTrigger, long)},
+     * but report an unhandled trigger through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     * @return The outcome of firing the trigger
+     */
+    public FireResult tryFire(LongTrigger<T> trigger, long arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return internalFire(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like {@link #fire(IntTrigger, int)},
+     * but report an unhandled trigger through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     * @return The outcome of firing the trigger
+     */
+    public FireResult tryFire(IntTrigger<T> trigger, int arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return internalFire(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like {@link #fire(DoubleTrigger, double)},
+     * but report an unhandled trigger through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     * @return The outcome of firing the trigger
+     */
+    public FireResult tryFire(DoubleTrigger<T> trigger, double arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return internalFire(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Override the default behaviour of throwing an exception when an unhandled trigger is fired
+     *
+     * @param unhandledTriggerAction An action to call when an unhandled trigger is fired
+     */
+    public void onUnhandledTrigger(final Action2<S, T> unhandledTriggerAction) {
+        if (unhandledTriggerAction == null) {
+            throw new IllegalStateException("unhandledTriggerAction");
+        }
+        this.unhandledTriggerAction = new Action3<S, T, Object[]>() {
+            @Override
+            public void doIt(S state, T trigger, Object[] arg3) {
+                unhandledTriggerAction.doIt(state, trigger);
+            }
+        };
+    }
+
+    /**
+     * Override the default behaviour of throwing an exception when an unhandled trigger is fired
+     *
+     * @param unhandledTriggerAction An action to call with state, trigger and params when an unhandled trigger is fired
+     */
+    public void onUnhandledTrigger(Action3<S, T, Object[]> unhandledTriggerAction) {
+        if (unhandledTriggerAction == null) {
+            throw new IllegalStateException("unhandledTriggerAction");
+        }
+        this.unhandledTriggerAction = unhandledTriggerAction;
+    }
+
+    /**
+     * Set tracer delegate. Transitions are traced after their actions have run, in the order they were
+     * committed.
+     *
+     * @param trace Trace delegate or null, if trace should be disabled
+     */
+    public void setTrace(Trace<S, T> trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Set the recorder keeping the most recent fires of this machine, from every thread firing it
+     *
+     * @param flightRecorder The recorder, or null to stop recording
+     */
+    public void setFlightRecorder(FlightRecorder<S, T> flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    private void publicFire(T trigger, Object... args) {
+        FireResult result = internalFire(trigger, args);
+        if (result == FireResult.UNHANDLED || result == FireResult.GUARD_REJECTED) {
+            unhandledTriggerAction.doIt(getState(), trigger, args);
+        }
+    }
+
+    private FireResult internalFire(T trigger, Object... args) {
+        isStarted.lazySet(true);
+        if (config.getParameterValidationPolicy() != ParameterValidationPolicy.NONE) {
+            TriggerWithParameters<T> configuration = config.getTriggerConfiguration(trigger);
+            if (configuration != null) {
+                configuration.validateParameters(args);
+            }
+        }
+        Trace<S, T> trace = this.trace;
+        if (trace != null) {
+            trace.trigger(trigger);
+        }
+
+        FlightRecorder<S, T> recorder = flightRecorder;
+        long started = recorder != null ? recorder.start() : 0;
+        S source = null;
+        S destination = null;
+        FireResult result = null;
+        try {
+            while (true) {
+                Commit<S, T> head = current.get();
+                StateRepresentation<S, T> representation = head.target;
+                source = representation.getUnderlyingState();
+                destination = source;
+                TriggerBehaviour<S, T> triggerBehaviour = representation.tryFindHandler(trigger);
+                if (triggerBehaviour == null) {
+                    result = representation.hasTriggerBehaviour(trigger) ? FireResult.GUARD_REJECTED : FireResult.UNHANDLED;
+                    return result;
+                }
+                if (triggerBehaviour instanceof IgnoredTriggerBehaviour) {
+                    result = FireResult.IGNORED;
+                    return result;
+                }
+
+                Commit<S, T> commit;
+                if (triggerBehaviour.isInternal()) {
+                    commit = new Commit<>(representation, representation, triggerBehaviour, null, args);
+                } else {
+                    destination = triggerBehaviour.transitionsTo(source, args);
+                    commit = new Commit<>(representationOf(destination), representation, triggerBehaviour,
+                            new Transition<>(source, destination, trigger), args);
+                }
+                if (!current.compareAndSet(head, commit)) {
+                    continue;
+                }
+                // links the transitions in the order they were committed
+                head.next = commit;
+                applyCommitted();
+                result = FireResult.HANDLED;
+                return result;
+            }
+        } finally {
+            if (recorder != null) {
+                recorder.record(-1, trigger, source, destination, result, started);
+            }
+        }
+    }
+
+    /**
+     * Runs the actions of the committed transitions in order, unless another thread is running them. That
+     * thread looks for new transitions once more after it stops running actions, so none is left behind.
+     * An action throwing does not stop the transitions after it; the first exception is rethrown at the end.
+     */
+    private void applyCommitted() {
+        RuntimeException failure = null;
+        do {
+            if (!applying.compareAndSet(false, true)) {
+                break;
+            }
+            try {
+                Commit<S, T> commit;
+                while ((commit = applied.next) != null) {
+                    applied = commit;
+                    try {
+                        commit.apply(trace);
+                    } catch (RuntimeException e) {
+                        if (failure == null) {
+                            failure = e;
+                        } else {
+                            failure.addSuppressed(e);
+                        }
+                    }
+                }
+            } finally {
+                applying.set(false);
+            }
+        } while (applied.next != null);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private StateRepresentation<S, T> representationOf(S state) {
+        StateRepresentation<S, T> representation = config.getRepresentation(state);
+        return representation != null ? representation : new StateRepresentation<S, T>(state);
+    }
+
+    /**
+     * A human-readable representation of the state machine
+     *
+     * @return A description of the current state and permitted triggers
+     */
+    @Override
+    public String toString() {
+        StateRepresentation<S, T> representation = current.get().target;
+        StringBuilder params = new StringBuilder();
+        String delim = "";
+        for (T trigger : representation.getPermittedTriggers()) {
+            params.append(delim);
+            params.append(trigger);
+            delim = ", ";
+        }
+
+        return String.format(
+                "ConcurrentStateMachine {{ State = %s, PermittedTriggers = {{ %s }}}}",
+                representation.getUnderlyingState(),
+                params.toString());
+    }
+
+    /**
+     * A committed transition, linked to the one committed after it
+     */
+    private static final class Commit<S, T> {
+
+        final StateRepresentation<S, T> target;
+        final StateRepresentation<S, T> source;
+        final TriggerBehaviour<S, T> triggerBehaviour;
+        final Transition<S, T> transition;
+        final Object[] args;
+        volatile Commit<S, T> next;
+
+        Commit(StateRepresentation<S, T> target, StateRepresentation<S, T> source,
+               TriggerBehaviour<S, T> triggerBehaviour, Transition<S, T> transition, Object[] args) {
+            this.target = target;
+            this.source = source;
+            this.triggerBehaviour = triggerBehaviour;
+            this.transition = transition;
+            this.args = args;
+        }
+
+        void apply(Trace<S, T> trace) {
+            if (transition == null) {
+                triggerBehaviour.performAction(args);
+                return;
+            }
+            TransitionPath<S, T> path = source.findTransitionPath(transition.getDestination());
+            if (path != null) {
+                path.exit(transition);
+                triggerBehaviour.performAction(args);
+                path.enter(transition, args);
+            } else {
+                source.exit(transition);
+                triggerBehaviour.performAction(args);
+                target.enter(transition, args);
+            }
+            if (trace != null) {
+                trace.transition(transition.getTrigger(), transition.getSource(), transition.getDestination());
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.oxo42.stateless4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * State store backed by a direct {@link ByteBuffer}, outside of the Java heap.
+ * <p>
+ * Each slot takes one, two or four bytes depending on the largest state code it must hold, so that a
+ * large fleet neither adds to the live heap the garbage collector has to trace nor wastes memory on wide
+ * codes. Writing a code that does not fit the slot width throws an {@link IllegalStateException}.
+ */
+public class DirectStateStore implements StateStore {
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int width;
+    private final int maxCode;
+
+    /**
+     * Create a store
+     *
+     * @param size    The number of slots
+     * @param maxCode The largest state code the store must be able to hold
+     */
+    public DirectStateStore(int size, int maxCode) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        if (maxCode < 0) {
+            throw new IllegalArgumentException("maxCode must not be negative");
+        }
+        if (maxCode <= 0xFF) {
+            width = 1;
+            this.maxCode = 0xFF;
+        } else if (maxCode <= 0xFFFF) {
+            width = 2;
+            this.maxCode = 0xFFFF;
+        } else {
+            width = 4;
+            this.maxCode = Integer.MAX_VALUE;
+        }
+        if ((long) size * width > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A direct store cannot hold " + size + " slots of " + width + " bytes");
+        }
+        this.size = size;
+        buffer = ByteBuffer.allocateDirect(size * width).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * The number of bytes taken by each slot
+     *
+     * @return 1, 2 or 4
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int get(int slot) {
+        switch (width) {
+            case 1:
+                return buffer.get(index(slot)) & 0xFF;
+            case 2:
+                return buffer.getShort(index(slot) * 2) & 0xFFFF;
+            default:
+                return buffer.getInt(index(slot) * 4);
+        }
+    }
+
+    @Override
+    public void set(int slot, int code) {
+        if (code < 0 || code > maxCode) {
+            throw new IllegalStateException("State code " + code + " does not fit in " + width + " byte(s)");
+        }
+        switch (width) {
+            case 1:
+                buffer.put(index(slot), (byte) code);
+                break;
+            case 2:
+                buffer.putShort(index(slot) * 2, (short) code);
+                break;
+            default:
+                buffer.putInt(index(slot) * 4, code);
+                break;
+        }
+    }
+
+    private int index(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("slot " + slot + " is out of bounds for size " + size);
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters;
+
+/**
+ * State machine configuration specialized for enum states and triggers.
+ * <p>
+ * Once frozen, state representations are stored in an array indexed by the state ordinal and every
+ * representation indexes its handlers by trigger ordinal, giving a {@code [state][trigger]} dispatch
+ * table. Until {@link #freeze()} is called it behaves exactly like {@link StateMachineConfig}.
+ *
+ * @param <S> The enum used to represent the states
+ * @param <T> The enum used to represent the triggers
+ */
+public class EnumStateMachineConfig<S extends Enum<S>, T extends Enum<T>> extends StateMachineConfig<S, T> {
+
+    private final Class<S> stateClass;
+    private final Class<T> triggerClass;
+    private StateRepresentation<S, T>[] representations;
+    private TriggerWithParameters<T>[] triggerConfigurations;
+
+    /**
+     * Create a configuration for the given state and trigger enums
+     *
+     * @param stateClass   The enum used to represent the states
+     * @param triggerClass The enum used to represent the triggers
+     */
+    public EnumStateMachineConfig(Class<S> stateClass, Class<T> triggerClass) {
+        assert stateClass != null : "stateClass is null";
+        assert triggerClass != null : "triggerClass is null";
+        this.stateClass = stateClass;
+        this.triggerClass = triggerClass;
+    }
+
+    @Override
+    public StateRepresentation<S, T> getRepresentation(S state) {
+        if (representations == null || state == null) {
+            return super.getRepresentation(state);
+        }
+        return representations[state.ordinal()];
+    }
+
+    @Override
+    public TriggerWithParameters<T> getTriggerConfiguration(T trigger) {
+        if (triggerConfigurations == null || trigger == null) {
+            return super.getTriggerConfiguration(trigger);
+        }
+        return triggerConfigurations[trigger.ordinal()];
+    }
+
+    @Override
+    public EnumStateMachineConfig<S, T> freeze() {
+        if (isFrozen()) {
+            return this;
+        }
+        super.freeze();
+
+        S[] states = stateClass.getEnumConstants();
+        T[] triggers = triggerClass.getEnumConstants();
+
+        @SuppressWarnings("unchecked")
+        StateRepresentation<S, T>[] byState = (StateRepresentation<S, T>[]) new StateRepresentation<?, ?>[states.length];
+        for (S state : states) {
+            StateRepresentation<S, T> representation = super.getRepresentation(state);
+            if (representation != null) {
+                representation.indexHandlersByOrdinal(triggers);
+            }
+            byState[state.ordinal()] = representation;
+        }
+
+        @SuppressWarnings("unchecked")
+        TriggerWithParameters<T>[] byTrigger = (TriggerWithParameters<T>[]) new TriggerWithParameters<?>[triggers.length];
+        for (T trigger : triggers) {
+            byTrigger[trigger.ordinal()] = super.getTriggerConfiguration(trigger);
+        }
+
+        representations = byState;
+        triggerConfigurations = byTrigger;
+        return this;
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * First-in first-out queue of triggers and their arguments, backed by a ring buffer that grows as needed
+ * and is reused once drained.
+ *
+ * @param <T> The type used to represent the triggers
+ */
+final class EventQueue<T> {
+
+    private Object[] triggers = new Object[8];
+    private Object[][] args = new Object[8][];
+    private int head = 0;
+    private int size = 0;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void add(T trigger, Object[] triggerArgs) {
+        if (size == triggers.length) {
+            grow();
+        }
+        int tail = (head + size) & (triggers.length - 1);
+        triggers[tail] = trigger;
+        args[tail] = triggerArgs;
+        size++;
+    }
+
+    /**
+     * The trigger at the head of the queue. Read its arguments with {@link #peekArgs()} before calling
+     * {@link #remove()}.
+     */
+    @SuppressWarnings("unchecked")
+    T peekTrigger() {
+        return (T) triggers[head];
+    }
+
+    Object[] peekArgs() {
+        return args[head];
+    }
+
+    void remove() {
+        triggers[head] = null;
+        args[head] = null;
+        head = (head + 1) & (triggers.length - 1);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The trigger at position {@code index}, counted from the head of the queue
+     */
+    @SuppressWarnings("unchecked")
+    T triggerAt(int index) {
+        return (T) triggers[(head + index) & (triggers.length - 1)];
+    }
+
+    Object[] argsAt(int index) {
+        return args[(head + index) & (triggers.length - 1)];
+    }
+
+    /**
+     * Remove the event at position {@code index}, shifting the events behind it one place forward
+     */
+    void removeAt(int index) {
+        int mask = triggers.length - 1;
+        for (int i = index; i < size - 1; i++) {
+            int to = (head + i) & mask;
+            int from = (to + 1) & mask;
+            triggers[to] = triggers[from];
+            args[to] = args[from];
+        }
+        int tail = (head + size - 1) & mask;
+        triggers[tail] = null;
+        args[tail] = null;
+        size--;
+    }
+
+    void clear() {
+        while (size > 0) {
+            remove();
+        }
+        head = 0;
+    }
+
+    private void grow() {
+        Object[] grownTriggers = new Object[triggers.length * 2];
+        Object[][] grownArgs = new Object[triggers.length * 2][];
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) & (triggers.length - 1);
+            grownTriggers[i] = triggers[index];
+            grownArgs[i] = args[index];
+        }
+        triggers = grownTriggers;
+        args = grownArgs;
+        head = 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * Outcome of {@link StateMachine#tryFire(Object)} and its parameterised variants
+ */
+public enum FireResult {
+
+    /**
+     * A transition or an internal action was performed
+     */
+    HANDLED,
+
+    /**
+     * The current state is configured to ignore the trigger
+     */
+    IGNORED,
+
+    /**
+     * Behaviours are configured for the trigger, but none of their guards is satisfied
+     */
+    GUARD_REJECTED,
+
+    /**
+     * No behaviour is configured for the trigger in the current state or its superstates
+     */
+    UNHANDLED,
+
+    /**
+     * The trigger was fired from within a transition of a machine in {@link FiringMode#QUEUED} mode, and
+     * will be fired once the current transition completes. Its outcome is then handled as by
+     * {@link StateMachine#fire(Object)}.
+     */
+    QUEUED,
+
+    /**
+     * The current state defers the trigger. It is stored by the machine and fired again after a later
+     * transition, once the machine is in a state that no longer defers it.
+     */
+    DEFERRED
+}
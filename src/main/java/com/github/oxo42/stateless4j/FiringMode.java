@@ -0,0 +1,23 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * What happens when a trigger is fired on a machine from within one of its own transitions, e.g. by an
+ * entry action.
+ *
+ * @see StateMachine#setFiringMode(FiringMode)
+ */
+public enum FiringMode {
+
+    /**
+     * Fire the trigger straight away, in the middle of the current transition. Each nested fire adds to
+     * the call stack.
+     */
+    IMMEDIATE,
+
+    /**
+     * Queue the trigger and fire it once the current transition, including its entry actions, has
+     * completed. Queued triggers are fired in order, from the outermost fire call, so that chains of
+     * triggers do not deepen the stack and every action sees a fully applied state.
+     */
+    QUEUED
+}
@@ -0,0 +1,257 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.FuncLong;
+import com.github.oxo42.stateless4j.transitions.FlightRecord;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the most recent fires of a machine or fleet, for inspection after an incident.
+ * <p>
+ * Every fire is written to a ring buffer of primitives allocated up front: the trigger, the source and
+ * destination states, the start time, the duration and the outcome. States and triggers are stored as
+ * ids, assigned the first time each one is recorded, so recording allocates nothing once every state and
+ * trigger has been seen. When the buffer is full the oldest fires are overwritten.
+ * <p>
+ * Any number of threads may record and take snapshots at the same time without locking. Each record
+ * carries its sequence number, which is replaced by a marker while the record is written; a snapshot skips
+ * the records being written or overwritten while it reads them. A fire whose slot is still being written by
+ * a thread that stalled for a whole lap of the buffer is dropped.
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers
+ * @see StateMachine#setFlightRecorder(FlightRecorder)
+ * @see StateMachineFleet#setFlightRecorder(FlightRecorder)
+ */
+public class FlightRecorder<S, T> {
+
+    private static final int FIELDS = 6;
+    private static final int SEQUENCE = 0;
+    private static final int TIMESTAMP = 1;
+    private static final int DURATION = 2;
+    private static final int INSTANCE = 3;
+    private static final int TRIGGER_OUTCOME = 4;
+    private static final int SOURCE_DESTINATION = 5;
+
+    private static final long EMPTY = -1;
+    private static final int NULL_ID = -1;
+    private static final int FAILED = -1;
+    private static final FireResult[] OUTCOMES = FireResult.values();
+
+    private final FuncLong clock;
+    private final int mask;
+    private final AtomicLongArray records;
+    private final AtomicLong next = new AtomicLong();
+
+    private final ConcurrentHashMap<Object, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Object[] symbols = new Object[16];
+
+    /**
+     * Create a recorder timing fires with {@link System#nanoTime()}
+     *
+     * @param capacity The number of fires kept, rounded up to a power of two
+     */
+    public FlightRecorder(int capacity) {
+        this(capacity, new FuncLong() {
+            private final long offset = System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+
+            @Override
+            public long call() {
+                return offset + System.nanoTime();
+            }
+        });
+    }
+
+    /**
+     * Create a recorder
+     *
+     * @param capacity The number of fires kept, rounded up to a power of two
+     * @param clock    A clock returning the current time in nanoseconds since the epoch
+     */
+    public FlightRecorder(int capacity, FuncLong clock) {
+        assert clock != null : "clock is null";
+        if (capacity <= 0 || capacity > 1 << 26) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^26");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.clock = clock;
+        this.mask = size - 1;
+        this.records = new AtomicLongArray(size * FIELDS);
+        for (int i = 0; i < size; i++) {
+            records.set(i * FIELDS + SEQUENCE, EMPTY);
+        }
+    }
+
+    /**
+     * The number of fires kept
+     *
+     * @return The capacity of the buffer
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * The number of fires recorded since the recorder was created, including those overwritten or dropped
+     *
+     * @return The number of fires recorded
+     */
+    public long getRecordedCount() {
+        return next.get();
+    }
+
+    long start() {
+        return clock.call();
+    }
+
+    /**
+     * Record a completed fire
+     *
+     * @param instance    The fleet instance fired, or -1
+     * @param trigger     The trigger fired
+     * @param source      The state the trigger was fired in
+     * @param destination The state transitioned to
+     * @param outcome     The outcome, or null if the fire threw
+     * @param started     The time the fire started, as returned by {@link #start()}
+     */
+    void record(int instance, T trigger, S source, S destination, FireResult outcome, long started) {
+        long duration = clock.call() - started;
+        long triggerOutcome = (long) idOf(trigger) << 32 | (outcome == null ? FAILED : outcome.ordinal()) & 0xFFFFFFFFL;
+        long sourceDestination = (long) idOf(source) << 32 | idOf(destination) & 0xFFFFFFFFL;
+
+        long sequence = next.getAndIncrement();
+        int base = (int) (sequence & mask) * FIELDS;
+        long current = records.get(base + SEQUENCE);
+        // a slot still being written by a fire stalled for a whole lap of the buffer, or already reused by a
+        // later fire, is left alone: this fire is dropped rather than torn
+        if (current < EMPTY || current > sequence || !records.compareAndSet(base + SEQUENCE, current, writing(sequence))) {
+            return;
+        }
+        // every store is ordered after the previous one, so readers never see new fields with an old sequence
+        records.lazySet(base + TIMESTAMP, started);
+        records.lazySet(base + DURATION, duration);
+        records.lazySet(base + INSTANCE, instance);
+        records.lazySet(base + TRIGGER_OUTCOME, triggerOutcome);
+        records.lazySet(base + SOURCE_DESTINATION, sourceDestination);
+        records.lazySet(base + SEQUENCE, sequence);
+    }
+
+    private static long writing(long sequence) {
+        return -2 - sequence;
+    }
+
+    private int idOf(Object symbol) {
+        if (symbol == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(symbol);
+        return id != null ? id : register(symbol);
+    }
+
+    private synchronized int register(Object symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        int registered = ids.size();
+        Object[] symbols = this.symbols;
+        if (registered == symbols.length) {
+            symbols = Arrays.copyOf(symbols, registered * 2);
+        }
+        symbols[registered] = symbol;
+        // publish the symbol before the id, so a reader that finds a record using it can resolve it
+        this.symbols = symbols;
+        ids.put(symbol, registered);
+        return registered;
+    }
+
+    /**
+     * The fires kept by the recorder, oldest first. Records written or overwritten while the snapshot is
+     * taken may be missing from it.
+     *
+     * @return The fires in the order they completed
+     */
+    @SuppressWarnings("unchecked")
+    public List<FlightRecord<S, T>> snapshot() {
+        long end = next.get();
+        long begin = Math.max(0, end - getCapacity());
+        long[] copy = new long[(int) (end - begin) * FIELDS];
+        int count = 0;
+        for (long sequence = begin; sequence < end; sequence++) {
+            int base = (int) (sequence & mask) * FIELDS;
+            if (records.get(base + SEQUENCE) != sequence) {
+                continue;
+            }
+            int offset = count * FIELDS;
+            for (int field = 1; field < FIELDS; field++) {
+                copy[offset + field] = records.get(base + field);
+            }
+            if (records.get(base + SEQUENCE) == sequence) {
+                copy[offset + SEQUENCE] = sequence;
+                count++;
+            }
+        }
+
+        Object[] symbols = this.symbols;
+        List<FlightRecord<S, T>> snapshot = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int offset = i * FIELDS;
+            long triggerOutcome = copy[offset + TRIGGER_OUTCOME];
+            long sourceDestination = copy[offset + SOURCE_DESTINATION];
+            int outcome = (int) triggerOutcome;
+            snapshot.add(new FlightRecord<>(
+                    (S) symbolOf(symbols, (int) (sourceDestination >> 32)),
+                    (S) symbolOf(symbols, (int) sourceDestination),
+                    (T) symbolOf(symbols, (int) (triggerOutcome >> 32)),
+                    copy[offset + SEQUENCE],
+                    (int) copy[offset + INSTANCE],
+                    copy[offset + TIMESTAMP] / 1_000_000,
+                    copy[offset + DURATION],
+                    outcome == FAILED ? null : OUTCOMES[outcome]));
+        }
+        return snapshot;
+    }
+
+    private static Object symbolOf(Object[] symbols, int id) {
+        return id == NULL_ID ? null : symbols[id];
+    }
+
+    /**
+     * Write a snapshot of the recorder as text, one fire per line, oldest first. The stream is flushed
+     * but not closed.
+     *
+     * @param out The stream to write to
+     * @throws IOException If the stream cannot be written
+     */
+    public void dump(OutputStream out) throws IOException {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, "UTF-8"));
+        for (FlightRecord<S, T> record : snapshot()) {
+            writer.write(String.format("%d %s%s %s: %s -> %s %s %dns\n",
+                    record.getSequence(),
+                    Instant.ofEpochMilli(record.getTimestamp()),
+                    record.getInstance() < 0 ? "" : " #" + record.getInstance(),
+                    record.getTrigger(),
+                    record.getSource(),
+                    record.getDestination(),
+                    record.isFailed() ? "FAILED" : record.getOutcome(),
+                    record.getDuration()));
+        }
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("Failed to write the flight recorder dump");
+        }
+    }
+}
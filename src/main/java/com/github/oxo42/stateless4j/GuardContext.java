@@ -0,0 +1,48 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Remembers the result of every guard evaluated while resolving one fire or answering one query, so
+ * that a guard shared by several trigger behaviours (or negated by
+ * {@link StateConfiguration#permitIfElseIgnore(Object, Object, FuncBoolean)}) is called at most once.
+ * <p>
+ * A context is owned by a single state machine and reused; it must be cleared before each resolution,
+ * since actions run afterwards may change what the guards observe.
+ */
+final class GuardContext {
+
+    private final IdentityHashMap<FuncBoolean, Boolean> results = new IdentityHashMap<>();
+
+    boolean evaluate(FuncBoolean guard) {
+        if (guard instanceof StateConfiguration.NegatedGuard) {
+            return !evaluate(((StateConfiguration.NegatedGuard) guard).getGuard());
+        }
+        if (guard == StateConfiguration.NO_GUARD) {
+            return true;
+        }
+        Boolean result = results.get(guard);
+        if (result == null) {
+            result = guard.call();
+            results.put(guard, result);
+        }
+        return result;
+    }
+
+    /**
+     * Whether any guard other than the default one was called since the context was last cleared
+     *
+     * @return True if a guard was called
+     */
+    boolean isEmpty() {
+        return results.isEmpty();
+    }
+
+    void clear() {
+        if (!results.isEmpty()) {
+            results.clear();
+        }
+    }
+}
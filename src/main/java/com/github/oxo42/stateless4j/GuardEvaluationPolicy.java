@@ -0,0 +1,21 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * How the guards of a trigger are evaluated when looking for the behaviour that handles it.
+ *
+ * @see StateMachineConfig#setGuardEvaluationPolicy(GuardEvaluationPolicy)
+ */
+public enum GuardEvaluationPolicy {
+
+    /**
+     * Evaluate every guard configured for the trigger in a state and fail if more than one is satisfied.
+     * Catches overlapping guards, at the cost of always running all of them.
+     */
+    STRICT,
+
+    /**
+     * Stop at the first behaviour, in configuration order, whose guard is satisfied. Overlapping guards
+     * are not detected.
+     */
+    FIRST_MATCH
+}
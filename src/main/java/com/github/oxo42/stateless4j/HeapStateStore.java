@@ -0,0 +1,36 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * State store backed by an {@code int} array on the Java heap
+ */
+public class HeapStateStore implements StateStore {
+
+    private final int[] codes;
+
+    /**
+     * Create a store
+     *
+     * @param size The number of slots
+     */
+    public HeapStateStore(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        codes = new int[size];
+    }
+
+    @Override
+    public int size() {
+        return codes.length;
+    }
+
+    @Override
+    public int get(int slot) {
+        return codes[slot];
+    }
+
+    @Override
+    public void set(int slot, int code) {
+        codes[slot] = code;
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * When the arguments of a trigger are checked against the types configured with
+ * {@link StateMachineConfig#setTriggerParameters(Object, Class)} and its variants.
+ *
+ * @see StateMachineConfig#setParameterValidationPolicy(ParameterValidationPolicy)
+ */
+public enum ParameterValidationPolicy {
+
+    /**
+     * Check the arguments whenever the trigger is fired, including when a queued or deferred trigger is
+     * fired again later.
+     */
+    EVERY_FIRE,
+
+    /**
+     * Check the arguments once, when the trigger is submitted to the machine. Queued and deferred triggers
+     * are not checked again when they are fired later.
+     */
+    ONCE,
+
+    /**
+     * Never check the arguments. The typed {@code fire} overloads already guarantee their types at compile
+     * time; raw or unchecked arguments are passed on to the actions as they are.
+     */
+    NONE
+}
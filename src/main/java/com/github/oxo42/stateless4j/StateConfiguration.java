@@ -5,6 +5,9 @@ import com.github.oxo42.stateless4j.transitions.Transition;
 import com.github.oxo42.stateless4j.transitions.TransitioningTriggerBehaviour;
 import com.github.oxo42.stateless4j.triggers.*;
 
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+
 public class StateConfiguration<S, T> {
     private static final String GUARD_IS_NULL = "guard is null";
     private static final String ENTRY_ACTION_IS_NULL = "entryAction is null";
@@ -13,7 +16,7 @@ public class StateConfiguration<S, T> {
     private static final String TRIGGER_IS_NULL = "trigger is null";
     private static final String DESTINATION_STATE_SELECTOR_IS_NULL = "destinationStateSelector is null";
 
-    private static final FuncBoolean NO_GUARD = new FuncBoolean() {
+    static final FuncBoolean NO_GUARD = new FuncBoolean() {
         @Override
         public boolean call() {
             return true;
@@ -69,6 +72,61 @@ public class StateConfiguration<S, T> {
         return publicPermit(trigger, destinationState, action);
     }
 
+    /**
+     * Accept the specified trigger and transition to the destination state, and fire the trigger
+     * automatically once the configured state has been occupied for the given time.
+     * <p>
+     * The timeout is armed whenever the state is entered and cancelled when it is exited; remaining in a
+     * substate does not cancel it. Timeouts only run on machines given a {@link TimingWheel} through
+     * {@link StateMachine#setTimingWheel(TimingWheel)}.
+     *
+     * @param delay            The time after which the trigger is fired
+     * @param trigger          The accepted trigger
+     * @param destinationState The state that the trigger will cause a transition to
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> permitAfter(Duration delay, T trigger, S destinationState) {
+        assert delay != null : "delay is null";
+        if (delay.isNegative()) {
+            throw new IllegalArgumentException("delay must not be negative");
+        }
+        permit(trigger, destinationState);
+        representation.addTimeout(trigger, delay.toNanos());
+        return this;
+    }
+
+    /**
+     * Accept the specified trigger and transition to the destination state, performing an asynchronous
+     * action between the exit actions of the current state and the entry actions of the destination
+     * state. See {@link #onEntryAsync(Func)}.
+     *
+     * @param trigger          The accepted trigger
+     * @param destinationState The state that the trigger will cause a transition to
+     * @param action           Action to start "during" transition
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> permitAsync(T trigger, S destinationState, Func<? extends CompletionStage<?>> action) {
+        return permitIfAsync(trigger, destinationState, NO_GUARD, action);
+    }
+
+    /**
+     * Accept the specified trigger and transition to the destination state if guard is true, performing
+     * an asynchronous action during the transition. See {@link #permitAsync(Object, Object, Func)}.
+     *
+     * @param trigger          The accepted trigger
+     * @param destinationState The state that the trigger will cause a transition to
+     * @param guard            Function that must return true in order for the trigger to be accepted
+     * @param action           Action to start "during" transition
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> permitIfAsync(T trigger, S destinationState, FuncBoolean guard, Func<? extends CompletionStage<?>> action) {
+        enforceNotIdentityTransition(destinationState);
+        assert guard != null : GUARD_IS_NULL;
+        assert action != null : ACTION_IS_NULL;
+        representation.addTriggerBehaviour(new AsyncActions.Transitioning<>(trigger, destinationState, guard, action));
+        return this;
+    }
+
     /**
      * Accept the specified trigger and transition to the destination state if guard is true
      *
@@ -110,12 +168,7 @@ public class StateConfiguration<S, T> {
      */
     public StateConfiguration<S, T> permitIfElseIgnore(T trigger, S destinationState, final FuncBoolean guard) {
         enforceNotIdentityTransition(destinationState);
-        ignoreIf(trigger, new FuncBoolean() {
-            @Override
-            public boolean call() {
-                return !guard.call();
-            }
-        });
+        ignoreIf(trigger, new NegatedGuard(guard));
         return publicPermitIf(trigger, destinationState, guard);
     }
 
@@ -134,12 +187,7 @@ public class StateConfiguration<S, T> {
      */
     public StateConfiguration<S, T> permitIfElseIgnore(T trigger, S destinationState, final FuncBoolean guard, Action action) {
         enforceNotIdentityTransition(destinationState);
-        ignoreIf(trigger, new FuncBoolean() {
-            @Override
-            public boolean call() {
-                return !guard.call();
-            }
-        });
+        ignoreIf(trigger, new NegatedGuard(guard));
         return publicPermitIf(trigger, destinationState, guard, action);
     }
 
@@ -266,7 +314,34 @@ public class StateConfiguration<S, T> {
      */
     public StateConfiguration<S, T> ignoreIf(T trigger, FuncBoolean guard) {
         assert guard != null : GUARD_IS_NULL;
-        representation.addTriggerBehaviour(new InternalTriggerBehaviour<S, T>(trigger, guard, NO_ACTION));
+        representation.addTriggerBehaviour(new IgnoredTriggerBehaviour<S, T>(trigger, guard));
+        return this;
+    }
+
+    /**
+     * Defer the specified trigger when in the configured state. The machine stores it with its arguments
+     * and fires it again, in the order deferred triggers were received, after the first transition into a
+     * state that does not defer it. If that state does not handle it either, the trigger is dropped
+     * without calling the unhandled trigger action. Only {@link StateMachine} supports deferred triggers.
+     *
+     * @param trigger The trigger to defer
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> defer(T trigger) {
+        return deferIf(trigger, NO_GUARD);
+    }
+
+    /**
+     * Defer the specified trigger when in the configured state, if the guard returns true.
+     * See {@link #defer(Object)}.
+     *
+     * @param trigger The trigger to defer
+     * @param guard   Function that must return true in order for the trigger to be deferred
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> deferIf(T trigger, FuncBoolean guard) {
+        assert guard != null : GUARD_IS_NULL;
+        representation.addTriggerBehaviour(new DeferredTriggerBehaviour<S, T>(trigger, guard));
         return this;
     }
 
@@ -314,7 +389,7 @@ public class StateConfiguration<S, T> {
         representation.addEntryAction(new Action2<Transition<S, T>, Object[]>() {
             @Override
             public void doIt(Transition<S, T> arg1, Object[] arg2) {
-                entryAction.doIt(arg1, arg2);
+                entryAction.doIt(arg1, PrimitiveArgument.boxed(arg2));
             }
         });
         return this;
@@ -533,6 +608,63 @@ public class StateConfiguration<S, T> {
         return onEntryFrom(trigger, entryAction);
     }
 
+    /**
+     * Specify an action that will execute when transitioning into the configured state
+     *
+     * @param trigger     The trigger by which the state must be entered in order for the action to execute
+     * @param entryAction Action to execute, receiving the {@code long} argument of the trigger
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> onEntryFrom(LongTrigger<T> trigger, final ActionLong entryAction) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        assert entryAction != null : ENTRY_ACTION_IS_NULL;
+        representation.addEntryAction(trigger.getTrigger(), new Action2<Transition<S, T>, Object[]>() {
+            @Override
+            public void doIt(Transition<S, T> t, Object[] args) {
+                entryAction.doIt(PrimitiveArgument.toLong(args[0]));
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Specify an action that will execute when transitioning into the configured state
+     *
+     * @param trigger     The trigger by which the state must be entered in order for the action to execute
+     * @param entryAction Action to execute, receiving the {@code int} argument of the trigger
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> onEntryFrom(IntTrigger<T> trigger, final ActionInt entryAction) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        assert entryAction != null : ENTRY_ACTION_IS_NULL;
+        representation.addEntryAction(trigger.getTrigger(), new Action2<Transition<S, T>, Object[]>() {
+            @Override
+            public void doIt(Transition<S, T> t, Object[] args) {
+                entryAction.doIt(PrimitiveArgument.toInt(args[0]));
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Specify an action that will execute when transitioning into the configured state
+     *
+     * @param trigger     The trigger by which the state must be entered in order for the action to execute
+     * @param entryAction Action to execute, receiving the {@code double} argument of the trigger
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> onEntryFrom(DoubleTrigger<T> trigger, final ActionDouble entryAction) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        assert entryAction != null : ENTRY_ACTION_IS_NULL;
+        representation.addEntryAction(trigger.getTrigger(), new Action2<Transition<S, T>, Object[]>() {
+            @Override
+            public void doIt(Transition<S, T> t, Object[] args) {
+                entryAction.doIt(PrimitiveArgument.toDouble(args[0]));
+            }
+        });
+        return this;
+    }
+
     /**
      * Specify an action that will execute when transitioning from the configured state
      *
@@ -561,6 +693,68 @@ public class StateConfiguration<S, T> {
         return this;
     }
 
+    /**
+     * Specify an asynchronous action that will execute when transitioning into the configured state.
+     * <p>
+     * {@link StateMachine#fireAsync(Object)} waits for the returned stage before running the next action,
+     * without blocking a thread. A synchronous fire blocks until it completes.
+     *
+     * @param entryAction Action to start, returning a stage that completes when the action is done
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> onEntryAsync(final Func<? extends CompletionStage<?>> entryAction) {
+        assert entryAction != null : ENTRY_ACTION_IS_NULL;
+        return onEntryAsync(new Func2<Transition<S, T>, CompletionStage<?>>() {
+            @Override
+            public CompletionStage<?> call(Transition<S, T> t) {
+                return entryAction.call();
+            }
+        });
+    }
+
+    /**
+     * Specify an asynchronous action that will execute when transitioning into the configured state.
+     * See {@link #onEntryAsync(Func)}.
+     *
+     * @param entryAction Action to start, providing details of the transition
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> onEntryAsync(Func2<Transition<S, T>, ? extends CompletionStage<?>> entryAction) {
+        assert entryAction != null : ENTRY_ACTION_IS_NULL;
+        representation.addEntryAction(new AsyncActions.Entry<>(entryAction));
+        return this;
+    }
+
+    /**
+     * Specify an asynchronous action that will execute when transitioning from the configured state.
+     * See {@link #onEntryAsync(Func)}.
+     *
+     * @param exitAction Action to start, returning a stage that completes when the action is done
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> onExitAsync(final Func<? extends CompletionStage<?>> exitAction) {
+        assert exitAction != null : EXIT_ACTION_IS_NULL;
+        return onExitAsync(new Func2<Transition<S, T>, CompletionStage<?>>() {
+            @Override
+            public CompletionStage<?> call(Transition<S, T> t) {
+                return exitAction.call();
+            }
+        });
+    }
+
+    /**
+     * Specify an asynchronous action that will execute when transitioning from the configured state.
+     * See {@link #onEntryAsync(Func)}.
+     *
+     * @param exitAction Action to start, providing details of the transition
+     * @return The receiver
+     */
+    public StateConfiguration<S, T> onExitAsync(Func2<Transition<S, T>, ? extends CompletionStage<?>> exitAction) {
+        assert exitAction != null : EXIT_ACTION_IS_NULL;
+        representation.addExitAction(new AsyncActions.Exit<>(exitAction));
+        return this;
+    }
+
     /**
      * Sets the superstate that the configured state is a substate of
      * <p>
@@ -1021,4 +1215,26 @@ public class StateConfiguration<S, T> {
         representation.addTriggerBehaviour(new DynamicTriggerBehaviour<>(trigger, destinationStateSelector, guard, action));
         return this;
     }
+
+    /**
+     * The negation of a guard. Kept as a distinct type so that a guard and its negation are only
+     * evaluated once per fire, see {@link GuardContext}.
+     */
+    static final class NegatedGuard implements FuncBoolean {
+
+        private final FuncBoolean guard;
+
+        NegatedGuard(FuncBoolean guard) {
+            this.guard = guard;
+        }
+
+        FuncBoolean getGuard() {
+            return guard;
+        }
+
+        @Override
+        public boolean call() {
+            return !guard.call();
+        }
+    }
 }
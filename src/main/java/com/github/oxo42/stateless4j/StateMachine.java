@@ -5,7 +5,15 @@ import com.github.oxo42.stateless4j.transitions.Transition;
 import com.github.oxo42.stateless4j.triggers.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
  * Models behaviour as transitions between a finite set of states
@@ -16,10 +24,36 @@ import java.util.List;
 public class StateMachine<S, T> {
     
     private static final String TRIGGER_IS_NULL = "trigger is null";
+    private static final Object[] NO_ARGS = new Object[0];
     protected final StateMachineConfig<S, T> config;
     protected final Func<S> stateAccessor;
     protected final Action1<S> stateMutator;
+    private final GuardContext guardContext = new GuardContext();
+
+    /**
+     * Representation of the last state seen through {@link #stateAccessor}. Reused for as long as the
+     * accessor keeps returning that state, so that the common case needs no lookup in the configuration.
+     * A detached representation stands for a state that was not configured when it was resolved.
+     */
+    private StateRepresentation<S, T> currentRepresentation = null;
+    private boolean currentRepresentationDetached = false;
     private Trace<S, T> trace = null;
+    private FlightRecorder<S, T> flightRecorder = null;
+    private FiringMode firingMode = FiringMode.IMMEDIATE;
+    private EventQueue<T> eventQueue = null;
+    private boolean firing = false;
+    private EventQueue<T> deferredEvents = null;
+    private boolean transitioned = false;
+    private boolean replaying = false;
+    private boolean reuseArgumentFrames = false;
+    private final Object[][] argumentFrames = new Object[4][];
+    private Object[] primitiveFrame = new Object[]{new PrimitiveArgument()};
+    private Executor asyncExecutor = ForkJoinPool.commonPool();
+    private final Object asyncLock = new Object();
+    private CompletableFuture<FireResult> lastAsyncFire = null;
+    private TimingWheel timingWheel = null;
+    private Executor timeoutDispatcher = null;
+    private List<ArmedTimeout> armedTimeouts = null;
     private boolean isStarted = false;
     private S initialState;
 
@@ -111,7 +145,17 @@ public class StateMachine<S, T> {
         }
         isStarted = true;
         Transition<S, T> initialTransition = new Transition<>(null, currentState, null);
-        getCurrentRepresentation().enter(initialTransition);
+        if (firingMode == FiringMode.IMMEDIATE) {
+            getCurrentRepresentation().enter(initialTransition);
+            return;
+        }
+        firing = true;
+        try {
+            getCurrentRepresentation().enter(initialTransition);
+            drainEventQueue();
+        } finally {
+            endFiring();
+        }
     }
 
     public StateConfiguration<S, T> configure(S state) {
@@ -141,12 +185,36 @@ public class StateMachine<S, T> {
      * @return The currently-permissible trigger values
      */
     public List<T> getPermittedTriggers() {
-        return getCurrentRepresentation().getPermittedTriggers();
+        guardContext.clear();
+        List<T> permittedTriggers = getCurrentRepresentation().getPermittedTriggers(guardContext);
+        guardContext.clear();
+        return permittedTriggers;
     }
     
     StateRepresentation<S, T> getCurrentRepresentation() {
-        StateRepresentation<S, T> representation = config.getRepresentation(getState());
-        return representation == null ? new StateRepresentation<S, T>(getState()) : representation;
+        S state = getState();
+        StateRepresentation<S, T> representation = currentRepresentation;
+        if (representation != null && isSameState(state, representation.getUnderlyingState())) {
+            if (!currentRepresentationDetached || config.isFrozen()) {
+                return representation;
+            }
+            // the state may have been configured since it was resolved
+            if (config.getRepresentation(state) == null) {
+                return representation;
+            }
+        }
+
+        representation = config.getRepresentation(state);
+        currentRepresentationDetached = representation == null;
+        if (representation == null) {
+            representation = new StateRepresentation<>(state);
+        }
+        currentRepresentation = representation;
+        return representation;
+    }
+
+    private static boolean isSameState(Object a, Object b) {
+        return a == b || (a != null && a.equals(b));
     }
     
     /**
@@ -158,7 +226,7 @@ public class StateMachine<S, T> {
      * @param trigger The trigger to fire
      */
     public void fire(T trigger) {
-        publicFire(trigger);
+        publicFire(trigger, NO_ARGS);
     }
     
     /**
@@ -173,7 +241,13 @@ public class StateMachine<S, T> {
      */
     public <TArg0> void fire(TriggerWithParameters1<TArg0, T> trigger, TArg0 arg0) {
         assert trigger != null : TRIGGER_IS_NULL;
-        publicFire(trigger.getTrigger(), arg0);
+        Object[] frame = takeArgumentFrame(1);
+        frame[0] = arg0;
+        try {
+            publicFire(trigger.getTrigger(), frame);
+        } finally {
+            releaseArgumentFrame(frame);
+        }
     }
     
     /**
@@ -190,7 +264,14 @@ public class StateMachine<S, T> {
      */
     public <TArg0, TArg1> void fire(TriggerWithParameters2<TArg0, TArg1, T> trigger, TArg0 arg0, TArg1 arg1) {
         assert trigger != null : TRIGGER_IS_NULL;
-        publicFire(trigger.getTrigger(), arg0, arg1);
+        Object[] frame = takeArgumentFrame(2);
+        frame[0] = arg0;
+        frame[1] = arg1;
+        try {
+            publicFire(trigger.getTrigger(), frame);
+        } finally {
+            releaseArgumentFrame(frame);
+        }
     }
     
     /**
@@ -209,38 +290,720 @@ public class StateMachine<S, T> {
      */
     public <TArg0, TArg1, TArg2> void fire(TriggerWithParameters3<TArg0, TArg1, TArg2, T> trigger, TArg0 arg0, TArg1 arg1, TArg2 arg2) {
         assert trigger != null : TRIGGER_IS_NULL;
-        publicFire(trigger.getTrigger(), arg0, arg1, arg2);
+        Object[] frame = takeArgumentFrame(3);
+        frame[0] = arg0;
+        frame[1] = arg1;
+        frame[2] = arg2;
+        try {
+            publicFire(trigger.getTrigger(), frame);
+        } finally {
+            releaseArgumentFrame(frame);
+        }
     }
     
+    /**
+     * Transition from the current state via the specified trigger, passing a {@code long} argument
+     * without boxing it or allocating an argument array.
+     * The target state is determined by the configuration of the current state.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     */
+    public void fire(LongTrigger<T> trigger, long arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takePrimitiveFrame();
+        ((PrimitiveArgument) frame[0]).setLong(arg0);
+        try {
+            publicFire(trigger.getTrigger(), frame);
+        } finally {
+            primitiveFrame = frame;
+        }
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, passing a {@code int} argument
+     * without boxing it or allocating an argument array.
+     * The target state is determined by the configuration of the current state.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     */
+    public void fire(IntTrigger<T> trigger, int arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takePrimitiveFrame();
+        ((PrimitiveArgument) frame[0]).setInt(arg0);
+        try {
+            publicFire(trigger.getTrigger(), frame);
+        } finally {
+            primitiveFrame = frame;
+        }
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, passing a {@code double} argument
+     * without boxing it or allocating an argument array.
+     * The target state is determined by the configuration of the current state.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     */
+    public void fire(DoubleTrigger<T> trigger, double arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takePrimitiveFrame();
+        ((PrimitiveArgument) frame[0]).setDouble(arg0);
+        try {
+            publicFire(trigger.getTrigger(), frame);
+        } finally {
+            primitiveFrame = frame;
+        }
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like {@link #fire(Object)}, but
+     * report an unhandled trigger through the result instead of calling the unhandled trigger action.
+     * Configuration errors, such as invalid trigger parameters or overlapping guards, still throw.
+     *
+     * @param trigger The trigger to fire
+     * @return The outcome of firing the trigger
+     */
+    public FireResult tryFire(T trigger) {
+        return dispatch(trigger, NO_ARGS, false);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like
+     * {@link #fire(TriggerWithParameters1, Object)}, but report an unhandled trigger through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param <TArg0> Type of the first trigger argument
+     * @return The outcome of firing the trigger
+     */
+    public <TArg0> FireResult tryFire(TriggerWithParameters1<TArg0, T> trigger, TArg0 arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takeArgumentFrame(1);
+        frame[0] = arg0;
+        try {
+            return dispatch(trigger.getTrigger(), frame, false);
+        } finally {
+            releaseArgumentFrame(frame);
+        }
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like
+     * {@link #fire(TriggerWithParameters2, Object, Object)}, but report an unhandled trigger through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param arg1    The second argument
+     * @param <TArg0> Type of the first trigger argument
+     * @param <TArg1> Type of the second trigger argument
+     * @return The outcome of firing the trigger
+     */
+    public <TArg0, TArg1> FireResult tryFire(TriggerWithParameters2<TArg0, TArg1, T> trigger, TArg0 arg0, TArg1 arg1) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takeArgumentFrame(2);
+        frame[0] = arg0;
+        frame[1] = arg1;
+        try {
+            return dispatch(trigger.getTrigger(), frame, false);
+        } finally {
+            releaseArgumentFrame(frame);
+        }
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like
+     * {@link #fire(TriggerWithParameters3, Object, Object, Object)}, but report an unhandled trigger
+     * through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param arg1    The second argument
+     * @param arg2    The third argument
+     * @param <TArg0> Type of the first trigger argument
+     * @param <TArg1> Type of the second trigger argument
+     * @param <TArg2> Type of the third trigger argument
+     * @return The outcome of firing the trigger
+     */
+    public <TArg0, TArg1, TArg2> FireResult tryFire(TriggerWithParameters3<TArg0, TArg1, TArg2, T> trigger, TArg0 arg0, TArg1 arg1, TArg2 arg2) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takeArgumentFrame(3);
+        frame[0] = arg0;
+        frame[1] = arg1;
+        frame[2] = arg2;
+        try {
+            return dispatch(trigger.getTrigger(), frame, false);
+        } finally {
+            releaseArgumentFrame(frame);
+        }
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like {@link #fire(LongTrigger, long)},
+     * but report an unhandled trigger through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     * @return The outcome of firing the trigger
+     */
+    public FireResult tryFire(LongTrigger<T> trigger, long arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takePrimitiveFrame();
+        ((PrimitiveArgument) frame[0]).setLong(arg0);
+        try {
+            return dispatch(trigger.getTrigger(), frame, false);
+        } finally {
+            primitiveFrame = frame;
+        }
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like {@link #fire(IntTrigger, int)},
+     * but report an unhandled trigger through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     * @return The outcome of firing the trigger
+     */
+    public FireResult tryFire(IntTrigger<T> trigger, int arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takePrimitiveFrame();
+        ((PrimitiveArgument) frame[0]).setInt(arg0);
+        try {
+            return dispatch(trigger.getTrigger(), frame, false);
+        } finally {
+            primitiveFrame = frame;
+        }
+    }
+
+    /**
+     * Transition from the current state via the specified trigger, like {@link #fire(DoubleTrigger, double)},
+     * but report an unhandled trigger through the result.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     * @return The outcome of firing the trigger
+     */
+    public FireResult tryFire(DoubleTrigger<T> trigger, double arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takePrimitiveFrame();
+        ((PrimitiveArgument) frame[0]).setDouble(arg0);
+        try {
+            return dispatch(trigger.getTrigger(), frame, false);
+        } finally {
+            primitiveFrame = frame;
+        }
+    }
+
+    /**
+     * Transition from the current state via the specified trigger without blocking the calling thread.
+     * <p>
+     * The fire runs on the async executor after every fire previously started with {@code fireAsync} has
+     * completed, so asynchronous fires are applied one at a time, in the order they were requested.
+     * Asynchronous actions, see {@link StateConfiguration#onEntryAsync(Func)}, are awaited without
+     * blocking a thread; once one completes, the following actions run on the async executor. An unhandled
+     * trigger is passed to the unhandled trigger action, as by {@link #fire(Object)}.
+     * <p>
+     * Asynchronous and synchronous fires should not be mixed on the same machine.
+     *
+     * @param trigger The trigger to fire
+     * @return A future completed with the outcome of the fire, or exceptionally if an action or the
+     * unhandled trigger action threw
+     */
+    public CompletableFuture<FireResult> fireAsync(T trigger) {
+        return publicFireAsync(trigger, NO_ARGS);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger without blocking the calling thread.
+     * See {@link #fireAsync(Object)}.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param <TArg0> Type of the first trigger argument
+     * @return A future completed with the outcome of the fire
+     */
+    public <TArg0> CompletableFuture<FireResult> fireAsync(TriggerWithParameters1<TArg0, T> trigger, TArg0 arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return publicFireAsync(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger without blocking the calling thread.
+     * See {@link #fireAsync(Object)}.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param arg1    The second argument
+     * @param <TArg0> Type of the first trigger argument
+     * @param <TArg1> Type of the second trigger argument
+     * @return A future completed with the outcome of the fire
+     */
+    public <TArg0, TArg1> CompletableFuture<FireResult> fireAsync(TriggerWithParameters2<TArg0, TArg1, T> trigger, TArg0 arg0, TArg1 arg1) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return publicFireAsync(trigger.getTrigger(), arg0, arg1);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger without blocking the calling thread.
+     * See {@link #fireAsync(Object)}.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param arg1    The second argument
+     * @param arg2    The third argument
+     * @param <TArg0> Type of the first trigger argument
+     * @param <TArg1> Type of the second trigger argument
+     * @param <TArg2> Type of the third trigger argument
+     * @return A future completed with the outcome of the fire
+     */
+    public <TArg0, TArg1, TArg2> CompletableFuture<FireResult> fireAsync(TriggerWithParameters3<TArg0, TArg1, TArg2, T> trigger, TArg0 arg0, TArg1 arg1, TArg2 arg2) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return publicFireAsync(trigger.getTrigger(), arg0, arg1, arg2);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger without blocking the calling thread.
+     * See {@link #fireAsync(Object)}. The argument is boxed, as it is kept until the fire runs.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     * @return A future completed with the outcome of the fire
+     */
+    public CompletableFuture<FireResult> fireAsync(LongTrigger<T> trigger, long arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return publicFireAsync(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger without blocking the calling thread.
+     * See {@link #fireAsync(Object)}. The argument is boxed, as it is kept until the fire runs.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     * @return A future completed with the outcome of the fire
+     */
+    public CompletableFuture<FireResult> fireAsync(IntTrigger<T> trigger, int arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return publicFireAsync(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition from the current state via the specified trigger without blocking the calling thread.
+     * See {@link #fireAsync(Object)}. The argument is boxed, as it is kept until the fire runs.
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     * @return A future completed with the outcome of the fire
+     */
+    public CompletableFuture<FireResult> fireAsync(DoubleTrigger<T> trigger, double arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        return publicFireAsync(trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Set the executor running asynchronous fires. Defaults to the common fork/join pool. An executor
+     * starting a virtual thread per task is a good fit when actions block.
+     *
+     * @param asyncExecutor The executor
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        assert asyncExecutor != null : "asyncExecutor is null";
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    private CompletableFuture<FireResult> publicFireAsync(final T trigger, final Object... args) {
+        final CompletableFuture<FireResult> result = new CompletableFuture<>();
+        final Executor executor = asyncExecutor;
+        CompletableFuture<FireResult> previous;
+        synchronized (asyncLock) {
+            previous = lastAsyncFire;
+            lastAsyncFire = result;
+        }
+        Runnable start = new Runnable() {
+            @Override
+            public void run() {
+                startAsyncFire(trigger, args, executor, result, false);
+            }
+        };
+        if (previous == null) {
+            executor.execute(start);
+        } else {
+            previous.whenCompleteAsync(new BiConsumer<FireResult, Throwable>() {
+                @Override
+                public void accept(FireResult ignored, Throwable error) {
+                    start.run();
+                }
+            }, executor);
+        }
+        return result;
+    }
+
+    /**
+     * @param replay Whether the trigger is a deferred one being replayed: it is then left in place when
+     *               deferred again, dropped when unhandled, and does not start a replay of its own
+     */
+    private void startAsyncFire(final T trigger, Object[] args, final Executor executor,
+                                final CompletableFuture<FireResult> result, final boolean replay) {
+        FlightRecorder<S, T> recorder = flightRecorder;
+        long started = recorder != null ? recorder.start() : 0;
+        S recordedSource = null;
+        S recordedDestination = null;
+        try {
+            isStarted = true;
+            ParameterValidationPolicy policy = config.getParameterValidationPolicy();
+            if (replay ? policy == ParameterValidationPolicy.EVERY_FIRE : policy != ParameterValidationPolicy.NONE) {
+                validateParameters(trigger, args);
+            }
+            if (trace != null) {
+                trace.trigger(trigger);
+            }
+
+            final StateRepresentation<S, T> representation = getCurrentRepresentation();
+            recordedSource = representation.getUnderlyingState();
+            recordedDestination = recordedSource;
+            guardContext.clear();
+            TriggerBehaviour<S, T> triggerBehaviour = representation.tryFindHandler(trigger, guardContext);
+            guardContext.clear();
+            if (triggerBehaviour == null) {
+                FireResult unhandled = representation.hasTriggerBehaviour(trigger) ? FireResult.GUARD_REJECTED : FireResult.UNHANDLED;
+                if (!replay) {
+                    unhandledTriggerAction.doIt(representation.getUnderlyingState(), trigger, PrimitiveArgument.boxed(args));
+                }
+                result.complete(unhandled);
+                return;
+            }
+            if (triggerBehaviour instanceof IgnoredTriggerBehaviour) {
+                result.complete(FireResult.IGNORED);
+                return;
+            }
+            if (triggerBehaviour instanceof DeferredTriggerBehaviour) {
+                if (!replay) {
+                    defer(trigger, args);
+                }
+                result.complete(FireResult.DEFERRED);
+                return;
+            }
+            if (triggerBehaviour.isInternal()) {
+                triggerBehaviour.performAction(args);
+                result.complete(FireResult.HANDLED);
+                return;
+            }
+
+            final S source = representation.getUnderlyingState();
+            final S destination = triggerBehaviour.transitionsTo(source, args);
+            TransitionPath<S, T> path = representation.findTransitionPath(destination);
+            if (path == null) {
+                path = TransitionPath.between(representation, destination, config.getRepresentation(destination));
+            }
+            final Transition<S, T> transition = new Transition<>(source, destination, trigger);
+            recordedDestination = destination;
+            Action commit = new Action() {
+                @Override
+                public void doIt() {
+                    setState(destination);
+                    updateTimeouts(representation, transition);
+                }
+            };
+            Action completed = new Action() {
+                @Override
+                public void doIt() {
+                    transitioned = true;
+                    if (trace != null) {
+                        trace.transition(trigger, source, destination);
+                    }
+                }
+            };
+            CompletableFuture<FireResult> done = result;
+            if (!replay) {
+                // the fire only completes once the deferred triggers it releases have been replayed
+                done = new CompletableFuture<>();
+                done.whenComplete(new BiConsumer<FireResult, Throwable>() {
+                    @Override
+                    public void accept(FireResult outcome, Throwable error) {
+                        if (error != null) {
+                            result.completeExceptionally(error);
+                        } else {
+                            replayDeferredEventsAsync(executor, result);
+                        }
+                    }
+                });
+            }
+            new AsyncTransition<>(path, transition, triggerBehaviour, args,
+                    commit, completed, executor, done).run();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        } finally {
+            if (recorder != null) {
+                recordWhenComplete(recorder, result, trigger, recordedSource, recordedDestination, started);
+            }
+        }
+    }
+
+    /**
+     * Replay the deferred triggers as {@link #replayDeferredEvents()} does, but through asynchronous fires,
+     * so that their asynchronous actions are awaited rather than joined. The result of the fire that caused
+     * the replay is completed once the replay has settled.
+     */
+    private void replayDeferredEventsAsync(Executor executor, CompletableFuture<FireResult> result) {
+        if (replaying) {
+            result.complete(FireResult.HANDLED);
+            return;
+        }
+        if (!transitioned || deferredEvents == null || deferredEvents.isEmpty()) {
+            transitioned = false;
+            result.complete(FireResult.HANDLED);
+            return;
+        }
+        replaying = true;
+        transitioned = false;
+        continueReplayAsync(0, executor, result);
+    }
+
+    private void continueReplayAsync(int index, final Executor executor, final CompletableFuture<FireResult> result) {
+        while (index < deferredEvents.size()) {
+            final int current = index;
+            CompletableFuture<FireResult> replayed = new CompletableFuture<>();
+            startAsyncFire(deferredEvents.triggerAt(current), deferredEvents.argsAt(current), executor, replayed, true);
+            if (!replayed.isDone()) {
+                replayed.whenCompleteAsync(new BiConsumer<FireResult, Throwable>() {
+                    @Override
+                    public void accept(FireResult outcome, Throwable error) {
+                        if (error != null) {
+                            failReplay(current, error, result);
+                        } else {
+                            continueReplayAsync(nextReplayIndex(current, outcome), executor, result);
+                        }
+                    }
+                }, executor);
+                return;
+            }
+            try {
+                index = nextReplayIndex(current, replayed.join());
+            } catch (CompletionException e) {
+                failReplay(current, e.getCause(), result);
+                return;
+            }
+        }
+        replaying = false;
+        result.complete(FireResult.HANDLED);
+    }
+
+    /**
+     * @return The index of the next deferred trigger to replay, after the one at index replayed with outcome
+     */
+    private int nextReplayIndex(int index, FireResult outcome) {
+        if (outcome == FireResult.DEFERRED) {
+            return index + 1;
+        }
+        // dropped when unhandled, as in replayDeferredEvents
+        deferredEvents.removeAt(index);
+        if (transitioned) {
+            transitioned = false;
+            return 0;
+        }
+        return index;
+    }
+
+    private void failReplay(int index, Throwable error, CompletableFuture<FireResult> result) {
+        deferredEvents.removeAt(index);
+        transitioned = false;
+        replaying = false;
+        result.completeExceptionally(error);
+    }
+
+    private void recordWhenComplete(final FlightRecorder<S, T> recorder, CompletableFuture<FireResult> result,
+                                    final T trigger, final S source, final S destination, final long started) {
+        result.whenComplete(new BiConsumer<FireResult, Throwable>() {
+            @Override
+            public void accept(FireResult outcome, Throwable error) {
+                recorder.record(-1, trigger, source, destination, outcome, started);
+            }
+        });
+    }
+
     protected void publicFire(T trigger, Object... args) {
-        isStarted = true;
-        if (trace != null) {
-            trace.trigger(trigger);
+        dispatch(trigger, args, true);
+    }
+
+    private FireResult dispatch(T trigger, Object[] args, boolean reportUnhandled) {
+        if (config.getParameterValidationPolicy() != ParameterValidationPolicy.NONE) {
+            validateParameters(trigger, args);
+        }
+        if (firingMode == FiringMode.IMMEDIATE) {
+            FireResult result = fireAndReport(trigger, args, reportUnhandled);
+            replayDeferredEvents();
+            return result;
         }
+        if (firing) {
+            if (eventQueue == null) {
+                eventQueue = new EventQueue<>();
+            }
+            eventQueue.add(trigger, retainable(args));
+            return FireResult.QUEUED;
+        }
+        firing = true;
+        try {
+            FireResult result = fireAndReport(trigger, args, reportUnhandled);
+            drainEventQueue();
+            return result;
+        } finally {
+            endFiring();
+        }
+    }
+
+    private FireResult fireAndReport(T trigger, Object[] args, boolean reportUnhandled) {
+        FireResult result = internalFire(trigger, args);
+        if (result == FireResult.DEFERRED) {
+            defer(trigger, args);
+        } else if (reportUnhandled && (result == FireResult.UNHANDLED || result == FireResult.GUARD_REJECTED)) {
+            unhandledTriggerAction.doIt(getCurrentRepresentation().getUnderlyingState(), trigger, PrimitiveArgument.boxed(args));
+        }
+        return result;
+    }
+
+    private void drainEventQueue() {
+        do {
+            while (eventQueue != null && !eventQueue.isEmpty()) {
+                T trigger = eventQueue.peekTrigger();
+                Object[] args = eventQueue.peekArgs();
+                eventQueue.remove();
+                if (config.getParameterValidationPolicy() == ParameterValidationPolicy.EVERY_FIRE) {
+                    validateParameters(trigger, args);
+                }
+                fireAndReport(trigger, args, true);
+            }
+            replayDeferredEvents();
+        } while (eventQueue != null && !eventQueue.isEmpty());
+    }
+
+    private void defer(T trigger, Object[] args) {
+        if (deferredEvents == null) {
+            deferredEvents = new EventQueue<>();
+        }
+        deferredEvents.add(trigger, retainable(args));
+    }
+
+    /**
+     * Fire the deferred triggers that the current state no longer defers, oldest first. Whenever one of
+     * them causes a transition, the scan starts over from the oldest trigger still deferred, so that
+     * triggers are always replayed in the order they were received. Triggers that are not handled are
+     * dropped without calling the unhandled trigger action.
+     */
+    private void replayDeferredEvents() {
+        if (replaying) {
+            return;
+        }
+        if (!transitioned || deferredEvents == null || deferredEvents.isEmpty()) {
+            transitioned = false;
+            return;
+        }
+        replaying = true;
+        try {
+            int index = 0;
+            transitioned = false;
+            while (index < deferredEvents.size()) {
+                T trigger = deferredEvents.triggerAt(index);
+                Object[] args = deferredEvents.argsAt(index);
+                FireResult result;
+                try {
+                    if (config.getParameterValidationPolicy() == ParameterValidationPolicy.EVERY_FIRE) {
+                        validateParameters(trigger, args);
+                    }
+                    result = internalFire(trigger, args);
+                } catch (RuntimeException e) {
+                    deferredEvents.removeAt(index);
+                    throw e;
+                }
+                if (result == FireResult.DEFERRED) {
+                    index++;
+                    continue;
+                }
+                // a trigger the current state neither handles nor defers is dropped: it was accepted when
+                // it was deferred, and the fire that caused the replay must not fail on its behalf
+                deferredEvents.removeAt(index);
+                if (transitioned) {
+                    transitioned = false;
+                    index = 0;
+                }
+            }
+        } finally {
+            replaying = false;
+        }
+    }
+
+    private void endFiring() {
+        firing = false;
+        // only non-empty if a fire threw; the queued triggers are discarded with it
+        if (eventQueue != null) {
+            eventQueue.clear();
+        }
+    }
+
+    private void validateParameters(T trigger, Object[] args) {
         TriggerWithParameters<T> configuration = config.getTriggerConfiguration(trigger);
         if (configuration != null) {
             configuration.validateParameters(args);
         }
-        
-        TriggerBehaviour<S, T> triggerBehaviour = getCurrentRepresentation().tryFindHandler(trigger);
-        if (triggerBehaviour == null) {
-            unhandledTriggerAction.doIt(getCurrentRepresentation().getUnderlyingState(), trigger, args);
-            return;
+    }
+
+    /**
+     * Fire a trigger whose arguments have already been validated as required by the configuration
+     */
+    private FireResult internalFire(T trigger, Object... args) {
+        isStarted = true;
+        if (trace != null) {
+            trace.trigger(trigger);
         }
-        
-        if (triggerBehaviour.isInternal()) {
-            triggerBehaviour.performAction(args);
-        } else {
-            S source = getState();
-            S destination = triggerBehaviour.transitionsTo(source, args);
-            Transition<S, T> transition = new Transition<>(source, destination, trigger);
-            
-            getCurrentRepresentation().exit(transition);
-            triggerBehaviour.performAction(args);
-            setState(destination);
-            getCurrentRepresentation().enter(transition, args);
-            if (trace != null) {
-                trace.transition(trigger, source, destination);
+        FlightRecorder<S, T> recorder = flightRecorder;
+        long started = recorder != null ? recorder.start() : 0;
+        StateRepresentation<S, T> representation = getCurrentRepresentation();
+        S source = representation.getUnderlyingState();
+        S destination = source;
+        FireResult result = null;
+        try {
+            guardContext.clear();
+            TriggerBehaviour<S, T> triggerBehaviour = representation.tryFindHandler(trigger, guardContext);
+            guardContext.clear();
+            if (triggerBehaviour == null) {
+                result = representation.hasTriggerBehaviour(trigger) ? FireResult.GUARD_REJECTED : FireResult.UNHANDLED;
+            } else if (triggerBehaviour instanceof IgnoredTriggerBehaviour) {
+                result = FireResult.IGNORED;
+            } else if (triggerBehaviour instanceof DeferredTriggerBehaviour) {
+                result = FireResult.DEFERRED;
+            } else if (triggerBehaviour.isInternal()) {
+                triggerBehaviour.performAction(args);
+                result = FireResult.HANDLED;
+            } else {
+                destination = triggerBehaviour.transitionsTo(source, args);
+                Transition<S, T> transition = new Transition<>(source, destination, trigger);
+                TransitionPath<S, T> path = representation.findTransitionPath(destination);
+
+                if (path != null) {
+                    path.exit(transition);
+                    triggerBehaviour.performAction(args);
+                    setState(destination);
+                    updateTimeouts(representation, transition);
+                    path.enter(transition, args);
+                } else {
+                    representation.exit(transition);
+                    triggerBehaviour.performAction(args);
+                    setState(destination);
+                    updateTimeouts(representation, transition);
+                    getCurrentRepresentation().enter(transition, args);
+                }
+                transitioned = true;
+                if (trace != null) {
+                    trace.transition(trigger, source, destination);
+                }
+                result = FireResult.HANDLED;
+            }
+            return result;
+        } finally {
+            if (recorder != null) {
+                recorder.record(-1, trigger, source, destination, result, started);
             }
         }
     }
@@ -291,7 +1054,207 @@ public class StateMachine<S, T> {
      * @return True if the trigger can be fired, false otherwise
      */
     public boolean canFire(T trigger) {
-        return getCurrentRepresentation().canHandle(trigger);
+        guardContext.clear();
+        boolean result = getCurrentRepresentation().tryFindHandler(trigger, guardContext) != null;
+        guardContext.clear();
+        return result;
+    }
+
+    /**
+     * Returns true if {@code trigger} can be fired in the current state, and collects the
+     * currently-permissible trigger values. Each guard is evaluated at most once for both answers.
+     *
+     * @param trigger           Trigger to test
+     * @param permittedTriggers Receives the currently-permissible trigger values
+     * @return True if the trigger can be fired, false otherwise
+     */
+    public boolean canFire(T trigger, Collection<? super T> permittedTriggers) {
+        StateRepresentation<S, T> representation = getCurrentRepresentation();
+        guardContext.clear();
+        permittedTriggers.addAll(representation.getPermittedTriggers(guardContext));
+        boolean result = representation.tryFindHandler(trigger, guardContext) != null;
+        guardContext.clear();
+        return result;
+    }
+
+    /**
+     * Set what happens when a trigger is fired from within a transition of this machine. Defaults to
+     * {@link FiringMode#IMMEDIATE}.
+     *
+     * @param firingMode The firing mode
+     */
+    public void setFiringMode(FiringMode firingMode) {
+        assert firingMode != null : "firingMode is null";
+        if (firing) {
+            throw new IllegalStateException("The firing mode cannot be changed while a trigger is being fired");
+        }
+        this.firingMode = firingMode;
+    }
+
+    public FiringMode getFiringMode() {
+        return firingMode;
+    }
+
+    /**
+     * Reuse one argument array per arity when firing parameterised triggers through
+     * {@link #fire(TriggerWithParameters1, Object)}, {@link #tryFire(TriggerWithParameters1, Object)} and
+     * their two and three argument variants, instead of allocating one per fire.
+     * <p>
+     * Disabled by default, since actions have always been allowed to keep the {@code Object[]} of arguments
+     * they receive. While enabled, the {@code Object[]} of arguments passed to actions taking the raw arguments, such as
+     * {@link StateConfiguration#onEntry(Action2)} or the unhandled trigger action, is only valid until the
+     * action returns and must not be retained. Queued and deferred triggers keep a copy of their arguments.
+     * {@link #fireAsync(TriggerWithParameters1, Object)} and its variants always allocate, as their
+     * arguments outlive the call.
+     *
+     * @param reuseArgumentFrames True to reuse argument arrays, false to allocate one per fire
+     */
+    public void setReuseArgumentFrames(boolean reuseArgumentFrames) {
+        this.reuseArgumentFrames = reuseArgumentFrames;
+    }
+
+    /**
+     * Take the argument array of the given arity, or allocate one if reuse is disabled or the array is
+     * already in use by an enclosing fire
+     */
+    private Object[] takeArgumentFrame(int arity) {
+        Object[] frame = argumentFrames[arity];
+        if (frame == null || !reuseArgumentFrames) {
+            return new Object[arity];
+        }
+        argumentFrames[arity] = null;
+        return frame;
+    }
+
+    private void releaseArgumentFrame(Object[] frame) {
+        if (reuseArgumentFrames) {
+            Arrays.fill(frame, null);
+            argumentFrames[frame.length] = frame;
+        }
+    }
+
+    /**
+     * Take the array holding the argument of a primitive trigger, or allocate one if it is already in use
+     * by an enclosing fire
+     */
+    private Object[] takePrimitiveFrame() {
+        Object[] frame = primitiveFrame;
+        if (frame == null) {
+            return new Object[]{new PrimitiveArgument()};
+        }
+        primitiveFrame = null;
+        return frame;
+    }
+
+    /**
+     * The arguments to keep beyond the current fire, copied if they may be a reused frame
+     */
+    private Object[] retainable(Object[] args) {
+        if (args.length == 1 && args[0] instanceof PrimitiveArgument) {
+            return PrimitiveArgument.boxed(args);
+        }
+        return reuseArgumentFrames && args.length != 0 ? args.clone() : args;
+    }
+
+    /**
+     * Set the wheel running the timeouts configured with
+     * {@link StateConfiguration#permitAfter(java.time.Duration, Object, Object)}. The timeouts of the current
+     * state and its superstates are armed at once; those armed on a previous wheel are cancelled.
+     * <p>
+     * Timed out triggers are fired on the thread advancing the wheel, so the wheel must be advanced on the
+     * thread firing the machine. Use {@link #setTimingWheel(TimingWheel, Executor)} otherwise.
+     *
+     * @param timingWheel The wheel, or null to disable timeouts
+     */
+    public void setTimingWheel(TimingWheel timingWheel) {
+        setTimingWheel(timingWheel, null);
+    }
+
+    /**
+     * Set the wheel running the timeouts configured with
+     * {@link StateConfiguration#permitAfter(java.time.Duration, Object, Object)}, and the executor firing the
+     * timed out triggers. The timeouts of the current state and its superstates are armed at once; those
+     * armed on a previous wheel are cancelled.
+     * <p>
+     * When a timeout expires, the thread advancing the wheel submits the fire to {@code dispatcher}, which
+     * must run it on the thread firing the machine. A {@link StateMachineMailbox} feeding the machine does,
+     * in order with the triggers sent to it. A timeout whose state was exited before the fire ran is dropped,
+     * as is a timed out trigger that the current state does not handle, without calling the unhandled
+     * trigger action.
+     *
+     * @param timingWheel The wheel, or null to disable timeouts
+     * @param dispatcher  The executor firing timed out triggers, or null to fire them on the thread
+     *                    advancing the wheel
+     */
+    public void setTimingWheel(TimingWheel timingWheel, Executor dispatcher) {
+        cancelTimeouts();
+        this.timingWheel = timingWheel;
+        this.timeoutDispatcher = dispatcher;
+        if (timingWheel != null) {
+            for (StateRepresentation<S, T> s = getCurrentRepresentation(); s != null; s = s.getSuperstate()) {
+                armTimeouts(s);
+            }
+        }
+    }
+
+    /**
+     * Cancel the timeouts of the states exited by a transition and arm those of the states it entered
+     */
+    private void updateTimeouts(StateRepresentation<S, T> source, Transition<S, T> transition) {
+        if (timingWheel == null) {
+            return;
+        }
+        StateRepresentation<S, T> destination = getCurrentRepresentation();
+        if (transition.isReentry()) {
+            cancelTimeouts(source, null);
+            armTimeouts(destination);
+            return;
+        }
+        cancelTimeouts(null, transition.getDestination());
+        for (StateRepresentation<S, T> d = destination; d != null && !d.includes(transition.getSource()); d = d.getSuperstate()) {
+            armTimeouts(d);
+        }
+    }
+
+    private void armTimeouts(StateRepresentation<S, T> representation) {
+        List<StateTimeout<T>> timeouts = representation.getTimeouts();
+        if (timeouts.isEmpty()) {
+            return;
+        }
+        if (armedTimeouts == null) {
+            armedTimeouts = new ArrayList<>();
+        }
+        for (StateTimeout<T> timeout : timeouts) {
+            ArmedTimeout armed = new ArmedTimeout(representation, timeout.getTrigger(), timeoutDispatcher);
+            armedTimeouts.add(armed);
+            armed.timeout = timingWheel.schedule(timeout.getDelayNanos(), TimeUnit.NANOSECONDS, armed);
+        }
+    }
+
+    /**
+     * Cancel the armed timeouts of {@code exited}, or of every state not including {@code destination}
+     */
+    private void cancelTimeouts(StateRepresentation<S, T> exited, S destination) {
+        if (armedTimeouts == null) {
+            return;
+        }
+        for (int i = armedTimeouts.size() - 1; i >= 0; i--) {
+            ArmedTimeout armed = armedTimeouts.get(i);
+            if (exited != null ? armed.owner == exited : !armed.owner.includes(destination)) {
+                armed.timeout.cancel();
+                armedTimeouts.remove(i);
+            }
+        }
+    }
+
+    private void cancelTimeouts() {
+        if (armedTimeouts == null) {
+            return;
+        }
+        for (ArmedTimeout armed : armedTimeouts) {
+            armed.timeout.cancel();
+        }
+        armedTimeouts.clear();
     }
 
     /**
@@ -304,6 +1267,16 @@ public class StateMachine<S, T> {
         this.trace = trace;
     }
 
+    /**
+     * Set the recorder keeping the most recent fires of this machine. Fires started with
+     * {@link #fireAsync(Object)} are recorded once they complete.
+     *
+     * @param flightRecorder The recorder, or null to stop recording
+     */
+    public void setFlightRecorder(FlightRecorder<S, T> flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
     /**
      * A human-readable representation of the state machine
      *
@@ -331,4 +1304,38 @@ public class StateMachine<S, T> {
                 getState(),
                 params.toString());
     }
-}
\ No newline at end of file
+
+    /**
+     * A timeout armed on entry to {@code owner}, firing {@code trigger} when it expires
+     */
+    private final class ArmedTimeout implements Action, Runnable {
+
+        final StateRepresentation<S, T> owner;
+        final T trigger;
+        final Executor dispatcher;
+        TimingWheel.Timeout timeout;
+
+        ArmedTimeout(StateRepresentation<S, T> owner, T trigger, Executor dispatcher) {
+            this.owner = owner;
+            this.trigger = trigger;
+            this.dispatcher = dispatcher;
+        }
+
+        @Override
+        public void doIt() {
+            if (dispatcher == null) {
+                run();
+            } else {
+                dispatcher.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            // no longer armed if its state was exited after it expired, before it was dispatched
+            if (armedTimeouts.remove(this)) {
+                dispatch(trigger, NO_ARGS, false);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +20,9 @@ public class StateMachineConfig<TState, TTrigger> {
 
     private final Map<TState, StateRepresentation<TState, TTrigger>> stateConfiguration = new HashMap<>();
     private final Map<TTrigger, TriggerWithParameters<TTrigger>> triggerConfiguration = new HashMap<>();
+    private GuardEvaluationPolicy guardEvaluationPolicy = GuardEvaluationPolicy.STRICT;
+    private ParameterValidationPolicy parameterValidationPolicy = ParameterValidationPolicy.EVERY_FIRE;
+    private boolean frozen = false;
 
     /**
      * Return StateRepresentation for the specified state. May return null.
@@ -40,12 +44,50 @@ public class StateMachineConfig<TState, TTrigger> {
         StateRepresentation<TState, TTrigger> result = stateConfiguration.get(state);
         if (result == null) {
             result = new StateRepresentation<>(state);
+            result.setGuardEvaluationPolicy(guardEvaluationPolicy);
             stateConfiguration.put(state, result);
         }
 
         return result;
     }
 
+    Collection<StateRepresentation<TState, TTrigger>> getRepresentations() {
+        return stateConfiguration.values();
+    }
+
+    /**
+     * True if any state fires a trigger once it has been occupied for a given time
+     *
+     * @return True if {@link StateConfiguration#permitAfter(java.time.Duration, Object, Object)} was used
+     */
+    boolean hasTimeouts() {
+        for (StateRepresentation<TState, TTrigger> representation : stateConfiguration.values()) {
+            if (!representation.getTimeouts().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if any state defers a trigger
+     *
+     * @return True if {@link StateConfiguration#defer(Object)} or
+     * {@link StateConfiguration#deferIf(Object, com.github.oxo42.stateless4j.delegates.FuncBoolean)} was used
+     */
+    boolean hasDeferredTriggers() {
+        for (StateRepresentation<TState, TTrigger> representation : stateConfiguration.values()) {
+            for (List<TriggerBehaviour<TState, TTrigger>> behaviours : representation.getTriggerBehaviours().values()) {
+                for (TriggerBehaviour<TState, TTrigger> behaviour : behaviours) {
+                    if (behaviour instanceof DeferredTriggerBehaviour) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     public TriggerWithParameters<TTrigger> getTriggerConfiguration(TTrigger trigger) {
         return triggerConfiguration.get(trigger);
     }
@@ -54,6 +96,41 @@ public class StateMachineConfig<TState, TTrigger> {
         return triggerConfiguration.containsKey(trigger);
     }
 
+    public GuardEvaluationPolicy getGuardEvaluationPolicy() {
+        return guardEvaluationPolicy;
+    }
+
+    /**
+     * Set how guards are evaluated when looking for the handler of a trigger. Defaults to
+     * {@link GuardEvaluationPolicy#STRICT}. Applies to all states, including those already configured.
+     *
+     * @param guardEvaluationPolicy The policy
+     */
+    public void setGuardEvaluationPolicy(GuardEvaluationPolicy guardEvaluationPolicy) {
+        assert guardEvaluationPolicy != null : "guardEvaluationPolicy is null";
+        enforceNotFrozen();
+        this.guardEvaluationPolicy = guardEvaluationPolicy;
+        for (StateRepresentation<TState, TTrigger> representation : stateConfiguration.values()) {
+            representation.setGuardEvaluationPolicy(guardEvaluationPolicy);
+        }
+    }
+
+    public ParameterValidationPolicy getParameterValidationPolicy() {
+        return parameterValidationPolicy;
+    }
+
+    /**
+     * Set when trigger arguments are checked against their configured types. Defaults to
+     * {@link ParameterValidationPolicy#EVERY_FIRE}.
+     *
+     * @param parameterValidationPolicy The policy
+     */
+    public void setParameterValidationPolicy(ParameterValidationPolicy parameterValidationPolicy) {
+        assert parameterValidationPolicy != null : "parameterValidationPolicy is null";
+        enforceNotFrozen();
+        this.parameterValidationPolicy = parameterValidationPolicy;
+    }
+
     /**
      * Begin configuration of the entry/exit actions and allowed transitions
      * when the state machine is in a particular state
@@ -62,6 +139,7 @@ public class StateMachineConfig<TState, TTrigger> {
      * @return A configuration object through which the state can be configured
      */
     public StateConfiguration<TState, TTrigger> configure(TState state) {
+        enforceNotFrozen();
         return new StateConfiguration<>(getOrCreateRepresentation(state), new Func2<TState, StateRepresentation<TState, TTrigger>>() {
 
             public StateRepresentation<TState, TTrigger> call(TState arg0) {
@@ -70,7 +148,61 @@ public class StateMachineConfig<TState, TTrigger> {
         });
     }
 
+    /**
+     * Compile the configuration for dispatch and make it immutable.
+     * <p>
+     * Every state gets a table that merges its own trigger behaviours with the ones inherited from its
+     * superstates, so that firing a trigger takes a single lookup instead of a walk up the superstate
+     * chain. The exit and entry actions of every transition to a fixed destination are flattened into
+     * arrays, and the state tree is numbered so that {@link StateMachine#isInState(Object)} is a
+     * constant-time comparison, so neither taking a transition nor checking a state walks the hierarchy.
+     * <p>
+     * The tree is numbered from each state's current superstate only. A state moved to another superstate
+     * by a second call to {@code substateOf} therefore no longer counts as included in the first one, as
+     * it still does in a configuration that is not frozen.
+     * <p>
+     * Any further attempt to modify the configuration throws an {@link IllegalStateException}. A frozen
+     * configuration can be shared by any number of state machines. Calling this method more than once has
+     * no effect.
+     *
+     * @return The receiver
+     */
+    public StateMachineConfig<TState, TTrigger> freeze() {
+        if (!frozen) {
+            for (StateRepresentation<TState, TTrigger> representation : stateConfiguration.values()) {
+                representation.freeze();
+            }
+            int next = 0;
+            for (StateRepresentation<TState, TTrigger> representation : stateConfiguration.values()) {
+                if (representation.getSuperstate() == null) {
+                    next = representation.numberStateTree(next, this);
+                }
+            }
+            for (StateRepresentation<TState, TTrigger> representation : stateConfiguration.values()) {
+                representation.compileTransitionPaths(this);
+            }
+            frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * True once {@link #freeze()} has been called
+     *
+     * @return True if the configuration can no longer be modified
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void enforceNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("The configuration has been frozen and can no longer be modified.");
+        }
+    }
+
     private void saveTriggerConfiguration(TriggerWithParameters<TTrigger> trigger) {
+        enforceNotFrozen();
         if (triggerConfiguration.containsKey(trigger.getTrigger())) {
             throw new IllegalStateException("Parameters for the trigger '" + trigger + "' have already been configured.");
         }
@@ -126,6 +258,45 @@ public class StateMachineConfig<TState, TTrigger> {
         return configuration;
     }
 
+    /**
+     * Specify that a specific trigger carries a single {@code long} argument, fired without boxing through
+     * {@link StateMachine#fire(LongTrigger, long)}
+     *
+     * @param trigger The underlying trigger value
+     * @return An object that can be passed to the fire() method in order to fire the parameterised trigger
+     */
+    public LongTrigger<TTrigger> setLongTriggerParameter(TTrigger trigger) {
+        LongTrigger<TTrigger> configuration = new LongTrigger<>(trigger);
+        saveTriggerConfiguration(configuration);
+        return configuration;
+    }
+
+    /**
+     * Specify that a specific trigger carries a single {@code int} argument, fired without boxing through
+     * {@link StateMachine#fire(IntTrigger, int)}
+     *
+     * @param trigger The underlying trigger value
+     * @return An object that can be passed to the fire() method in order to fire the parameterised trigger
+     */
+    public IntTrigger<TTrigger> setIntTriggerParameter(TTrigger trigger) {
+        IntTrigger<TTrigger> configuration = new IntTrigger<>(trigger);
+        saveTriggerConfiguration(configuration);
+        return configuration;
+    }
+
+    /**
+     * Specify that a specific trigger carries a single {@code double} argument, fired without boxing through
+     * {@link StateMachine#fire(DoubleTrigger, double)}
+     *
+     * @param trigger The underlying trigger value
+     * @return An object that can be passed to the fire() method in order to fire the parameterised trigger
+     */
+    public DoubleTrigger<TTrigger> setDoubleTriggerParameter(TTrigger trigger) {
+        DoubleTrigger<TTrigger> configuration = new DoubleTrigger<>(trigger);
+        saveTriggerConfiguration(configuration);
+        return configuration;
+    }
+
     public void generateDotFileInto(final OutputStream dotFile) throws IOException {
         generateDotFileInto(dotFile, false);
     }
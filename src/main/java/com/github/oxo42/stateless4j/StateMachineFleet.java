@@ -0,0 +1,688 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Action3;
+import com.github.oxo42.stateless4j.delegates.Func;
+import com.github.oxo42.stateless4j.delegates.Trace;
+import com.github.oxo42.stateless4j.transitions.Transition;
+import com.github.oxo42.stateless4j.triggers.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A large number of state machine instances driven by one shared, frozen configuration.
+ * <p>
+ * Instances are identified by an index from zero to {@link #size()} - 1 and have no object of their own:
+ * the state of every instance is a small integer code held in a slot of a {@link StateStore}, either a
+ * single array on the heap or a {@link DirectStateStore} outside of it. Entry, exit and transition
+ * actions are shared by all instances; during a fire they can find out which instance is transitioning
+ * through {@link #getCurrentInstance()}.
+ * <p>
+ * Like {@link StateMachine}, a fleet is not thread safe. Independent instances can however be driven from
+ * several threads at once through {@link #fireInParallel(int[], Object[], ForkJoinPool)}.
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ */
+public class StateMachineFleet<S, T> {
+
+    private static final String TRIGGER_IS_NULL = "trigger is null";
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final Object NO_HANDLER = new Object();
+
+    private final StateMachineConfig<S, T> config;
+    private final StateStore states;
+
+    /**
+     * Representations indexed by state code. Configured states use their position in the frozen state
+     * tree as code; states that are not configured are appended as they are first seen, by replacing the
+     * array so that it can be read without locking.
+     */
+    private volatile StateRepresentation<S, T>[] representations;
+    private final int configuredStates;
+
+    private final Dispatcher dispatcher = new Dispatcher();
+    private Object[] primitiveFrame = new Object[]{new PrimitiveArgument()};
+    private final ThreadLocal<Dispatcher> parallelDispatchers = new ThreadLocal<>();
+    private final AtomicInteger parallelRuns = new AtomicInteger();
+    private Trace<S, T> trace = null;
+    private FlightRecorder<S, T> flightRecorder = null;
+
+    private Action3<Integer, S, T> unhandledTriggerAction = new Action3<Integer, S, T>() {
+        @Override
+        public void doIt(Integer instance, S state, T trigger) {
+            throw new IllegalStateException(
+                    String.format(
+                            "No valid leaving transitions are permitted from state '%s' for trigger '%s' of instance %d. Consider ignoring the trigger.",
+                            state, trigger, instance)
+            );
+        }
+    };
+
+    /**
+     * Construct a fleet in which every instance starts in the same state.
+     * <p>
+     * The configuration is frozen if it is not already: the fleet shares its handler tables between all
+     * instances, so the caller can no longer change it once the fleet is created.
+     *
+     * @param size         The number of instances
+     * @param initialState The initial state of every instance
+     * @param config       State machine configuration, without timed transitions or deferred triggers
+     * @throws IllegalStateException If the configuration has timed transitions or deferred triggers,
+     *                               which need a {@link StateMachine}
+     */
+    public StateMachineFleet(int size, S initialState, StateMachineConfig<S, T> config) {
+        this(new HeapStateStore(size), initialState, config);
+    }
+
+    /**
+     * Construct a fleet keeping its states in the given store, with one instance per slot. Every instance
+     * starts in the same state.
+     * <p>
+     * The configuration is frozen if it is not already: the fleet shares its handler tables between all
+     * instances, so the caller can no longer change it once the fleet is created. States are coded from
+     * zero, so the store must hold codes up to one less than the number of states the instances can be in.
+     *
+     * @param store        Storage for the instance states
+     * @param initialState The initial state of every instance
+     * @param config       State machine configuration, without timed transitions or deferred triggers
+     * @throws IllegalStateException If the configuration has timed transitions or deferred triggers,
+     *                               which need a {@link StateMachine}
+     */
+    public StateMachineFleet(StateStore store, S initialState, StateMachineConfig<S, T> config) {
+        assert store != null : "store is null";
+        assert config != null : "config is null";
+        if (config.hasTimeouts()) {
+            throw new IllegalStateException("Timed transitions are only supported by StateMachine");
+        }
+        if (config.hasDeferredTriggers()) {
+            throw new IllegalStateException("Deferred triggers are only supported by StateMachine");
+        }
+        this.config = config.freeze();
+
+        Collection<StateRepresentation<S, T>> configured = config.getRepresentations();
+        @SuppressWarnings("unchecked")
+        StateRepresentation<S, T>[] representations = (StateRepresentation<S, T>[]) new StateRepresentation<?, ?>[configured.size()];
+        for (StateRepresentation<S, T> representation : configured) {
+            representations[representation.getTreeIndex()] = representation;
+        }
+        this.representations = representations;
+        configuredStates = representations.length;
+
+        states = store;
+        int initialCode = codeOf(initialState);
+        for (int i = 0; i < store.size(); i++) {
+            store.set(i, initialCode);
+        }
+    }
+
+    /**
+     * The number of instances in the fleet
+     *
+     * @return The number of instances
+     */
+    public int size() {
+        return states.size();
+    }
+
+    public StateMachineConfig<S, T> configuration() {
+        return config;
+    }
+
+    /**
+     * The current state of an instance
+     *
+     * @param instance The instance
+     * @return The current state
+     */
+    public S getState(int instance) {
+        return representations[states.get(instance)].getUnderlyingState();
+    }
+
+    /**
+     * Put an instance into a state without running any actions, e.g. when restoring persisted instances
+     *
+     * @param instance The instance
+     * @param state    The new state
+     */
+    public void setState(int instance, S state) {
+        states.set(instance, codeOf(state));
+    }
+
+    /**
+     * A {@link StateMachine} whose state is the state of one instance of the fleet. The machine reads and
+     * writes the instance slot through the external storage constructor, so it can be handed to code
+     * written against the single machine API. Creating it allocates; prefer the fleet methods on hot paths.
+     *
+     * @param instance The instance
+     * @return A state machine bound to the instance
+     */
+    public StateMachine<S, T> attach(final int instance) {
+        return new StateMachine<>(
+                new Func<S>() {
+                    @Override
+                    public S call() {
+                        return getState(instance);
+                    }
+                },
+                new Action1<S>() {
+                    @Override
+                    public void doIt(S state) {
+                        setState(instance, state);
+                    }
+                },
+                config);
+    }
+
+    /**
+     * The instance whose trigger is being fired. Meant to be called from entry, exit and transition actions.
+     *
+     * @return The instance being fired, or -1 outside of a fire
+     */
+    public int getCurrentInstance() {
+        if (parallelRuns.get() != 0) {
+            Dispatcher parallel = parallelDispatchers.get();
+            if (parallel != null) {
+                return parallel.currentInstance;
+            }
+        }
+        return dispatcher.currentInstance;
+    }
+
+    /**
+     * Determine if an instance is in the supplied state
+     *
+     * @param instance The instance
+     * @param state    The state to test for
+     * @return True if the current state is equal to, or a substate of, the supplied state
+     */
+    public boolean isInState(int instance, S state) {
+        return representations[states.get(instance)].isIncludedIn(state);
+    }
+
+    /**
+     * Returns true if {@code trigger} can be fired in the current state of an instance
+     *
+     * @param instance The instance
+     * @param trigger  Trigger to test
+     * @return True if the trigger can be fired, false otherwise
+     */
+    public boolean canFire(int instance, T trigger) {
+        return dispatcher.resolve(representations[states.get(instance)], trigger) != null;
+    }
+
+    /**
+     * The currently-permissible trigger values of an instance
+     *
+     * @param instance The instance
+     * @return The currently-permissible trigger values
+     */
+    public List<T> getPermittedTriggers(int instance) {
+        GuardContext guards = dispatcher.guardContext;
+        guards.clear();
+        List<T> permittedTriggers = representations[states.get(instance)].getPermittedTriggers(guards);
+        guards.clear();
+        return permittedTriggers;
+    }
+
+    /**
+     * Transition an instance from its current state via the specified trigger
+     *
+     * @param instance The instance
+     * @param trigger  The trigger to fire
+     */
+    public void fire(int instance, T trigger) {
+        publicFire(instance, trigger, NO_ARGS);
+    }
+
+    /**
+     * Transition an instance from its current state via the specified trigger
+     *
+     * @param instance The instance
+     * @param trigger  The trigger to fire
+     * @param arg0     The first argument
+     * @param <TArg0>  Type of the first trigger argument
+     */
+    public <TArg0> void fire(int instance, TriggerWithParameters1<TArg0, T> trigger, TArg0 arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        publicFire(instance, trigger.getTrigger(), arg0);
+    }
+
+    /**
+     * Transition an instance from its current state via the specified trigger
+     *
+     * @param instance The instance
+     * @param trigger  The trigger to fire
+     * @param arg0     The first argument
+     * @param arg1     The second argument
+     * @param <TArg0>  Type of the first trigger argument
+     * @param <TArg1>  Type of the second trigger argument
+     */
+    public <TArg0, TArg1> void fire(int instance, TriggerWithParameters2<TArg0, TArg1, T> trigger, TArg0 arg0, TArg1 arg1) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        publicFire(instance, trigger.getTrigger(), arg0, arg1);
+    }
+
+    /**
+     * Transition an instance from its current state via the specified trigger
+     *
+     * @param instance The instance
+     * @param trigger  The trigger to fire
+     * @param arg0     The first argument
+     * @param arg1     The second argument
+     * @param arg2     The third argument
+     * @param <TArg0>  Type of the first trigger argument
+     * @param <TArg1>  Type of the second trigger argument
+     * @param <TArg2>  Type of the third trigger argument
+     */
+    public <TArg0, TArg1, TArg2> void fire(int instance, TriggerWithParameters3<TArg0, TArg1, TArg2, T> trigger, TArg0 arg0, TArg1 arg1, TArg2 arg2) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        publicFire(instance, trigger.getTrigger(), arg0, arg1, arg2);
+    }
+
+    /**
+     * Fire a trigger on one instance, passing a {@code long} argument without boxing it or allocating an argument
+     * array. See {@link #fire(int, Object)}.
+     *
+     * @param instance The instance
+     * @param trigger  The trigger to fire
+     * @param arg0     The argument
+     */
+    public void fire(int instance, LongTrigger<T> trigger, long arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takePrimitiveFrame();
+        ((PrimitiveArgument) frame[0]).setLong(arg0);
+        try {
+            publicFire(instance, trigger.getTrigger(), frame);
+        } finally {
+            primitiveFrame = frame;
+        }
+    }
+
+    /**
+     * Fire a trigger on one instance, passing an {@code int} argument without boxing it or allocating an argument
+     * array. See {@link #fire(int, Object)}.
+     *
+     * @param instance The instance
+     * @param trigger  The trigger to fire
+     * @param arg0     The argument
+     */
+    public void fire(int instance, IntTrigger<T> trigger, int arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takePrimitiveFrame();
+        ((PrimitiveArgument) frame[0]).setInt(arg0);
+        try {
+            publicFire(instance, trigger.getTrigger(), frame);
+        } finally {
+            primitiveFrame = frame;
+        }
+    }
+
+    /**
+     * Fire a trigger on one instance, passing a {@code double} argument without boxing it or allocating an argument
+     * array. See {@link #fire(int, Object)}.
+     *
+     * @param instance The instance
+     * @param trigger  The trigger to fire
+     * @param arg0     The argument
+     */
+    public void fire(int instance, DoubleTrigger<T> trigger, double arg0) {
+        assert trigger != null : TRIGGER_IS_NULL;
+        Object[] frame = takePrimitiveFrame();
+        ((PrimitiveArgument) frame[0]).setDouble(arg0);
+        try {
+            publicFire(instance, trigger.getTrigger(), frame);
+        } finally {
+            primitiveFrame = frame;
+        }
+    }
+
+    /**
+     * Fire a trigger on every instance of the fleet. See {@link #fireAll(int[], Object)}.
+     *
+     * @param trigger The trigger to fire
+     */
+    public void fireAll(T trigger) {
+        bulkFire(null, states.size(), trigger);
+    }
+
+    /**
+     * Fire a trigger on a batch of instances, in the order given. Instances may appear more than once.
+     * <p>
+     * Instances are handled one by one, exactly as {@link #fire(int, Object)} would handle them, and
+     * unhandled triggers are reported to the unhandled trigger action per instance. A handler found
+     * without calling any guard is resolved once per state for the whole batch. A state whose handlers
+     * are guarded is resolved again for every instance, so each guard sees the effects of the actions
+     * run for the instances before it.
+     *
+     * @param instances The instances
+     * @param trigger   The trigger to fire
+     */
+    public void fireAll(int[] instances, T trigger) {
+        assert instances != null : "instances is null";
+        bulkFire(instances, instances.length, trigger);
+    }
+
+    /**
+     * Transition an instance from its current state via the specified trigger, like
+     * {@link #fire(int, Object)}, but report an unhandled trigger through the result
+     *
+     * @param instance The instance
+     * @param trigger  The trigger to fire
+     * @return The outcome of firing the trigger
+     */
+    public FireResult tryFire(int instance, T trigger) {
+        return dispatcher.fire(instance, trigger, NO_ARGS);
+    }
+
+    /**
+     * Fire a batch of triggers on the common fork/join pool. See
+     * {@link #fireInParallel(int[], Object[], ForkJoinPool)}.
+     *
+     * @param instances The instance of each event
+     * @param triggers  The trigger of each event
+     */
+    public void fireInParallel(int[] instances, T[] triggers) {
+        fireInParallel(instances, triggers, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Fire a batch of triggers, given as parallel arrays of instances and triggers, using the threads of
+     * a fork/join pool.
+     * <p>
+     * The instances are split into contiguous ranges and the events of each range are applied by one
+     * task, so the triggers of any one instance are applied in the order of the batch while independent
+     * instances transition concurrently. Events of different instances are not ordered relative to each
+     * other. Actions, guards, the trace and the unhandled trigger action may therefore run on several
+     * threads at once and must be thread safe. The fleet must not be used otherwise until the call returns.
+     *
+     * @param instances The instance of each event
+     * @param triggers  The trigger of each event
+     * @param pool      The pool to run on
+     */
+    public void fireInParallel(int[] instances, T[] triggers, ForkJoinPool pool) {
+        assert instances != null : "instances is null";
+        assert triggers != null : "triggers is null";
+        assert pool != null : "pool is null";
+        if (instances.length != triggers.length) {
+            throw new IllegalArgumentException("instances and triggers must have the same length");
+        }
+        int size = states.size();
+        int partitions = Math.max(1, Math.min(pool.getParallelism() * 4, size));
+
+        // counting sort of the events by partition; stable, so each instance keeps its order
+        int[] offsets = new int[partitions + 1];
+        for (int instance : instances) {
+            if (instance < 0 || instance >= size) {
+                throw new IndexOutOfBoundsException("instance " + instance + " is out of bounds for size " + size);
+            }
+            offsets[partitionOf(instance, partitions, size) + 1]++;
+        }
+        for (int p = 0; p < partitions; p++) {
+            offsets[p + 1] += offsets[p];
+        }
+        int[] cursors = Arrays.copyOf(offsets, partitions);
+        int[] events = new int[instances.length];
+        for (int event = 0; event < instances.length; event++) {
+            events[cursors[partitionOf(instances[event], partitions, size)]++] = event;
+        }
+
+        parallelRuns.incrementAndGet();
+        try {
+            pool.invoke(new PartitionTask(instances, triggers, events, offsets, 0, partitions));
+        } finally {
+            parallelRuns.decrementAndGet();
+        }
+    }
+
+    private static int partitionOf(int instance, int partitions, int size) {
+        return (int) ((long) instance * partitions / size);
+    }
+
+    /**
+     * Override the default behaviour of throwing an exception when an unhandled trigger is fired
+     *
+     * @param unhandledTriggerAction An action to call with instance, state and trigger when an unhandled trigger is fired
+     */
+    public void onUnhandledTrigger(Action3<Integer, S, T> unhandledTriggerAction) {
+        if (unhandledTriggerAction == null) {
+            throw new IllegalStateException("unhandledTriggerAction");
+        }
+        this.unhandledTriggerAction = unhandledTriggerAction;
+    }
+
+    /**
+     * Set tracer delegate, called on every fire and transition of any instance
+     *
+     * @param trace Trace delegate or null, if trace should be disabled
+     */
+    public void setTrace(Trace<S, T> trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Set the recorder keeping the most recent fires of every instance. Fires applied in parallel record
+     * into the same recorder.
+     *
+     * @param flightRecorder The recorder, or null to stop recording
+     */
+    public void setFlightRecorder(FlightRecorder<S, T> flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    /**
+     * Take the array holding the argument of a primitive trigger, or allocate one if it is already in use
+     * by an enclosing fire
+     */
+    private Object[] takePrimitiveFrame() {
+        Object[] frame = primitiveFrame;
+        if (frame == null) {
+            return new Object[]{new PrimitiveArgument()};
+        }
+        primitiveFrame = null;
+        return frame;
+    }
+
+    private void publicFire(int instance, T trigger, Object... args) {
+        FireResult result = dispatcher.fire(instance, trigger, args);
+        if (result == FireResult.UNHANDLED || result == FireResult.GUARD_REJECTED) {
+            unhandledTriggerAction.doIt(instance, getState(instance), trigger);
+        }
+    }
+
+    private void bulkFire(int[] instances, int count, T trigger) {
+        if (config.getParameterValidationPolicy() != ParameterValidationPolicy.NONE) {
+            TriggerWithParameters<T> configuration = config.getTriggerConfiguration(trigger);
+            if (configuration != null) {
+                configuration.validateParameters(NO_ARGS);
+            }
+        }
+
+        // handler of the trigger per state code, kept when resolved without calling a guard; NO_HANDLER marks
+        // a state without one
+        Object[] handlers = new Object[representations.length];
+        for (int i = 0; i < count; i++) {
+            int instance = instances == null ? i : instances[i];
+            if (trace != null) {
+                trace.trigger(trigger);
+            }
+            int code = states.get(instance);
+            if (code >= handlers.length) {
+                handlers = Arrays.copyOf(handlers, representations.length);
+            }
+            StateRepresentation<S, T> representation = representations[code];
+            Object handler = handlers[code];
+            if (handler == null) {
+                handler = dispatcher.resolve(representation, trigger);
+                if (!dispatcher.guarded) {
+                    handlers[code] = handler == null ? NO_HANDLER : handler;
+                }
+            }
+
+            @SuppressWarnings("unchecked")
+            TriggerBehaviour<S, T> triggerBehaviour = handler == NO_HANDLER ? null : (TriggerBehaviour<S, T>) handler;
+            FireResult result = dispatcher.apply(instance, representation, trigger, triggerBehaviour, NO_ARGS);
+            if (result == FireResult.UNHANDLED || result == FireResult.GUARD_REJECTED) {
+                unhandledTriggerAction.doIt(instance, representation.getUnderlyingState(), trigger);
+            }
+        }
+    }
+
+    /**
+     * Resolves and applies triggers. Holds the state of a fire in progress, so every thread firing
+     * triggers needs its own.
+     */
+    private final class Dispatcher {
+
+        private final GuardContext guardContext = new GuardContext();
+        private int currentInstance = -1;
+        // whether the last resolution called a guard, and so only holds for the instance it was made for
+        private boolean guarded;
+
+        TriggerBehaviour<S, T> resolve(StateRepresentation<S, T> representation, T trigger) {
+            guardContext.clear();
+            TriggerBehaviour<S, T> triggerBehaviour = representation.tryFindHandler(trigger, guardContext);
+            guarded = !guardContext.isEmpty();
+            guardContext.clear();
+            return triggerBehaviour;
+        }
+
+        FireResult fire(int instance, T trigger, Object[] args) {
+            StateRepresentation<S, T> representation = representations[states.get(instance)];
+            if (trace != null) {
+                trace.trigger(trigger);
+            }
+            if (config.getParameterValidationPolicy() != ParameterValidationPolicy.NONE) {
+                TriggerWithParameters<T> configuration = config.getTriggerConfiguration(trigger);
+                if (configuration != null) {
+                    configuration.validateParameters(args);
+                }
+            }
+            return apply(instance, representation, trigger, resolve(representation, trigger), args);
+        }
+
+        FireResult apply(int instance, StateRepresentation<S, T> representation, T trigger, TriggerBehaviour<S, T> triggerBehaviour, Object[] args) {
+            FlightRecorder<S, T> recorder = flightRecorder;
+            long started = recorder != null ? recorder.start() : 0;
+            S source = representation.getUnderlyingState();
+            S destination = source;
+            FireResult result = null;
+            int previousInstance = currentInstance;
+            currentInstance = instance;
+            try {
+                if (triggerBehaviour == null) {
+                    result = representation.hasTriggerBehaviour(trigger) ? FireResult.GUARD_REJECTED : FireResult.UNHANDLED;
+                } else if (triggerBehaviour instanceof IgnoredTriggerBehaviour) {
+                    result = FireResult.IGNORED;
+                } else if (triggerBehaviour.isInternal()) {
+                    triggerBehaviour.performAction(args);
+                    result = FireResult.HANDLED;
+                } else {
+                    destination = triggerBehaviour.transitionsTo(source, args);
+                    int destinationCode = codeOf(destination);
+                    Transition<S, T> transition = new Transition<>(source, destination, trigger);
+                    TransitionPath<S, T> path = representation.findTransitionPath(destination);
+
+                    if (path != null) {
+                        path.exit(transition);
+                        triggerBehaviour.performAction(args);
+                        states.set(instance, destinationCode);
+                        path.enter(transition, args);
+                    } else {
+                        representation.exit(transition);
+                        triggerBehaviour.performAction(args);
+                        states.set(instance, destinationCode);
+                        representations[destinationCode].enter(transition, args);
+                    }
+                    if (trace != null) {
+                        trace.transition(trigger, source, destination);
+                    }
+                    result = FireResult.HANDLED;
+                }
+                return result;
+            } finally {
+                currentInstance = previousInstance;
+                if (recorder != null) {
+                    recorder.record(instance, trigger, source, destination, result, started);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the events of a range of partitions, splitting the range while it holds more than one.
+     */
+    @SuppressWarnings("serial")
+    private final class PartitionTask extends RecursiveAction {
+
+        private final int[] instances;
+        private final T[] triggers;
+        private final int[] events;
+        private final int[] offsets;
+        private final int from;
+        private final int to;
+
+        PartitionTask(int[] instances, T[] triggers, int[] events, int[] offsets, int from, int to) {
+            this.instances = instances;
+            this.triggers = triggers;
+            this.events = events;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PartitionTask(instances, triggers, events, offsets, from, middle),
+                        new PartitionTask(instances, triggers, events, offsets, middle, to));
+                return;
+            }
+            if (offsets[from] == offsets[to]) {
+                return;
+            }
+            Dispatcher worker = new Dispatcher();
+            parallelDispatchers.set(worker);
+            try {
+                for (int i = offsets[from]; i < offsets[to]; i++) {
+                    int instance = instances[events[i]];
+                    T trigger = triggers[events[i]];
+                    FireResult result = worker.fire(instance, trigger, NO_ARGS);
+                    if (result == FireResult.UNHANDLED || result == FireResult.GUARD_REJECTED) {
+                        unhandledTriggerAction.doIt(instance, getState(instance), trigger);
+                    }
+                }
+            } finally {
+                parallelDispatchers.remove();
+            }
+        }
+    }
+
+    private int codeOf(S state) {
+        StateRepresentation<S, T> representation = config.getRepresentation(state);
+        if (representation != null) {
+            return representation.getTreeIndex();
+        }
+        return codeOfUnconfigured(state);
+    }
+
+    private synchronized int codeOfUnconfigured(S state) {
+        StateRepresentation<S, T>[] known = representations;
+        for (int code = configuredStates; code < known.length; code++) {
+            S other = known[code].getUnderlyingState();
+            if (other == state || (other != null && other.equals(state))) {
+                return code;
+            }
+        }
+        known = Arrays.copyOf(known, known.length + 1);
+        known[known.length - 1] = new StateRepresentation<>(state);
+        representations = known;
+        return known.length - 1;
+    }
+}
@@ -0,0 +1,263 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.triggers.DoubleTrigger;
+import com.github.oxo42.stateless4j.triggers.IntTrigger;
+import com.github.oxo42.stateless4j.triggers.LongTrigger;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters1;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters2;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters3;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feeds a {@link StateMachine} with triggers sent from any number of threads, actor style.
+ * <p>
+ * Senders append triggers to a lock-free queue and return at once. Whenever the queue goes from idle to
+ * non-empty, a drain task is submitted to the executor; it fires the queued triggers in the order they
+ * were sent, at most {@code batchSize} at a time before resubmitting itself so that a busy mailbox does
+ * not monopolise a worker. A mailbox is drained by at most one task at a time, so the machine is never
+ * used by two threads at once and needs no locking. Many mailboxes can share one executor.
+ * <p>
+ * Once wrapped, the machine should only be used from its own actions, which run on the draining thread,
+ * and from tasks passed to {@link #execute(Runnable)}, such as the timed out triggers of a machine given
+ * the mailbox through {@link StateMachine#setTimingWheel(TimingWheel, Executor)}.
+ * Exceptions thrown while firing a trigger, including those of the default unhandled trigger action, are
+ * passed to the error handler and do not stop the mailbox.
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ */
+public class StateMachineMailbox<S, T> implements Executor {
+
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
+    private final StateMachine<S, T> machine;
+    private final Executor executor;
+    private final int batchSize;
+    private final Queue<Message<T>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private volatile Action2<T, RuntimeException> errorHandler = new Action2<T, RuntimeException>() {
+        @Override
+        public void doIt(T trigger, RuntimeException error) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+        }
+    };
+
+    /**
+     * Create a mailbox draining up to 64 triggers per task
+     *
+     * @param machine  The machine to feed
+     * @param executor The executor running the drain tasks
+     */
+    public StateMachineMailbox(StateMachine<S, T> machine, Executor executor) {
+        this(machine, executor, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create a mailbox
+     *
+     * @param machine   The machine to feed
+     * @param executor  The executor running the drain tasks
+     * @param batchSize The number of triggers fired by a drain task before it resubmits itself
+     */
+    public StateMachineMailbox(StateMachine<S, T> machine, Executor executor, int batchSize) {
+        assert machine != null : "machine is null";
+        assert executor != null : "executor is null";
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.machine = machine;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Queue a trigger
+     *
+     * @param trigger The trigger to fire
+     */
+    public void send(T trigger) {
+        enqueue(trigger, NO_ARGS);
+    }
+
+    /**
+     * Queue a trigger with one argument
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param <TArg0> Type of the first trigger argument
+     */
+    public <TArg0> void send(TriggerWithParameters1<TArg0, T> trigger, TArg0 arg0) {
+        assert trigger != null : "trigger is null";
+        enqueue(trigger.getTrigger(), new Object[]{arg0});
+    }
+
+    /**
+     * Queue a trigger with two arguments
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param arg1    The second argument
+     * @param <TArg0> Type of the first trigger argument
+     * @param <TArg1> Type of the second trigger argument
+     */
+    public <TArg0, TArg1> void send(TriggerWithParameters2<TArg0, TArg1, T> trigger, TArg0 arg0, TArg1 arg1) {
+        assert trigger != null : "trigger is null";
+        enqueue(trigger.getTrigger(), new Object[]{arg0, arg1});
+    }
+
+    /**
+     * Queue a trigger with three arguments
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The first argument
+     * @param arg1    The second argument
+     * @param arg2    The third argument
+     * @param <TArg0> Type of the first trigger argument
+     * @param <TArg1> Type of the second trigger argument
+     * @param <TArg2> Type of the third trigger argument
+     */
+    public <TArg0, TArg1, TArg2> void send(TriggerWithParameters3<TArg0, TArg1, TArg2, T> trigger, TArg0 arg0, TArg1 arg1, TArg2 arg2) {
+        assert trigger != null : "trigger is null";
+        enqueue(trigger.getTrigger(), new Object[]{arg0, arg1, arg2});
+    }
+
+    /**
+     * Queue a trigger with a {@code long} argument, boxed while it waits in the mailbox
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     */
+    public void send(LongTrigger<T> trigger, long arg0) {
+        assert trigger != null : "trigger is null";
+        enqueue(trigger.getTrigger(), new Object[]{arg0});
+    }
+
+    /**
+     * Queue a trigger with an {@code int} argument, boxed while it waits in the mailbox
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     */
+    public void send(IntTrigger<T> trigger, int arg0) {
+        assert trigger != null : "trigger is null";
+        enqueue(trigger.getTrigger(), new Object[]{arg0});
+    }
+
+    /**
+     * Queue a trigger with a {@code double} argument, boxed while it waits in the mailbox
+     *
+     * @param trigger The trigger to fire
+     * @param arg0    The argument
+     */
+    public void send(DoubleTrigger<T> trigger, double arg0) {
+        assert trigger != null : "trigger is null";
+        enqueue(trigger.getTrigger(), new Object[]{arg0});
+    }
+
+    /**
+     * Queue a task, run on the draining thread in order with the triggers
+     *
+     * @param task The task to run
+     */
+    @Override
+    public void execute(Runnable task) {
+        assert task != null : "task is null";
+        queue.offer(new Message<T>(null, NO_ARGS, task));
+        schedule();
+    }
+
+    /**
+     * Set the handler of exceptions thrown while firing a trigger or running a task. By default they are
+     * passed to the uncaught exception handler of the draining thread.
+     *
+     * @param errorHandler An action to call with the trigger, or null for a task, and the exception
+     */
+    public void onError(Action2<T, RuntimeException> errorHandler) {
+        if (errorHandler == null) {
+            throw new IllegalStateException("errorHandler");
+        }
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * True if no trigger is queued. Triggers already taken from the queue may still be firing.
+     *
+     * @return True if the queue is empty
+     */
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public StateMachine<S, T> getMachine() {
+        return machine;
+    }
+
+    private void enqueue(T trigger, Object[] args) {
+        queue.offer(new Message<>(trigger, args, null));
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drain);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                Message<T> message = queue.poll();
+                if (message == null) {
+                    break;
+                }
+                try {
+                    if (message.task != null) {
+                        message.task.run();
+                    } else {
+                        machine.publicFire(message.trigger, message.args);
+                    }
+                } catch (RuntimeException e) {
+                    errorHandler.doIt(message.trigger, e);
+                }
+            }
+        } finally {
+            scheduled.set(false);
+        }
+        // a sender may have seen the mailbox scheduled just before it was released
+        if (!queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private static final class Message<T> {
+
+        final T trigger;
+        final Object[] args;
+        final Runnable task;
+
+        Message(T trigger, Object[] args, Runnable task) {
+            this.trigger = trigger;
+            this.args = args;
+            this.task = task;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.github.oxo42.stateless4j;
 import com.github.oxo42.stateless4j.delegates.Action1;
 import com.github.oxo42.stateless4j.delegates.Action2;
 import com.github.oxo42.stateless4j.transitions.Transition;
+import com.github.oxo42.stateless4j.transitions.TransitioningTriggerBehaviour;
 import com.github.oxo42.stateless4j.triggers.TriggerBehaviour;
 
 import java.util.*;
@@ -17,8 +18,37 @@ public class StateRepresentation<S, T> {
     private final List<Action2<Transition<S, T>, Object[]>> entryActions = new ArrayList<>();
     private final List<Action1<Transition<S, T>>> exitActions = new ArrayList<>();
     private final List<StateRepresentation<S, T>> substates = new ArrayList<>();
+    private final List<StateTimeout<T>> timeouts = new ArrayList<>();
     private StateRepresentation<S, T> superstate; // null
 
+    /**
+     * Handlers of this state and all of its superstates, merged by trigger. Only set once the owning
+     * configuration has been frozen; null means the representation is still mutable.
+     */
+    private Map<T, HandlerChain<S, T>> compiledHandlers;
+
+    /**
+     * Same content as {@link #compiledHandlers}, indexed by trigger ordinal. Only set for enum triggers.
+     */
+    private HandlerChain<S, T>[] compiledHandlersByOrdinal;
+
+    /**
+     * Precomputed paths to every destination that can be reached through a static transition from this
+     * state. {@code transitionPaths[i]} leads to {@code pathDestinations[i]}.
+     */
+    private Object[] pathDestinations;
+    private TransitionPath<S, T>[] transitionPaths;
+
+    /**
+     * Pre-order number of this state in the frozen state tree, and the highest number of any of its
+     * substates. A state includes another one iff the other's number falls within this interval.
+     */
+    private int treeIndex = -1;
+    private int treeEnd = -1;
+    private StateMachineConfig<S, T> owner; // set when numbered
+
+    private GuardEvaluationPolicy guardEvaluationPolicy = GuardEvaluationPolicy.STRICT;
+
     public StateRepresentation(S state) {
         this.state = state;
     }
@@ -32,35 +62,85 @@ public class StateRepresentation<S, T> {
     }
 
     public TriggerBehaviour<S, T> tryFindHandler(T trigger) {
-        TriggerBehaviour<S, T> result = tryFindLocalHandler(trigger);
+        return tryFindHandler(trigger, (GuardContext) null);
+    }
+
+    /**
+     * Find the handler for {@code trigger} and collect the currently-permissible triggers in a single
+     * pass, evaluating each guard at most once.
+     *
+     * @param trigger           The trigger to find a handler for
+     * @param permittedTriggers Receives the currently-permissible trigger values
+     * @param guards            The cleared context remembering the guards evaluated
+     * @return The handler for {@code trigger}, or null if there is none
+     */
+    TriggerBehaviour<S, T> tryFindHandler(T trigger, Collection<? super T> permittedTriggers, GuardContext guards) {
+        permittedTriggers.addAll(getPermittedTriggers(guards));
+        return tryFindHandler(trigger, guards);
+    }
+
+    TriggerBehaviour<S, T> tryFindHandler(T trigger, GuardContext guards) {
+        if (compiledHandlers != null) {
+            HandlerChain<S, T> chain = findHandlerChain(trigger);
+            return chain == null ? null : chain.tryFindHandler(trigger, guards);
+        }
+        TriggerBehaviour<S, T> result = tryFindLocalHandler(trigger, guards);
         if (result == null && superstate != null) {
-            result = superstate.tryFindHandler(trigger);
+            result = superstate.tryFindHandler(trigger, guards);
         }
         return result;
     }
 
-    TriggerBehaviour<S, T> tryFindLocalHandler(T trigger/*, out TriggerBehaviour handler*/) {
+    /**
+     * True if any behaviour, whatever its guard, is configured for {@code trigger} in this state or
+     * one of its superstates
+     */
+    boolean hasTriggerBehaviour(T trigger) {
+        if (compiledHandlers != null) {
+            return findHandlerChain(trigger) != null;
+        }
+        return triggerBehaviours.containsKey(trigger) || (superstate != null && superstate.hasTriggerBehaviour(trigger));
+    }
+
+    TriggerBehaviour<S, T> tryFindLocalHandler(T trigger) {
+        return tryFindLocalHandler(trigger, null);
+    }
+
+    TriggerBehaviour<S, T> tryFindLocalHandler(T trigger, GuardContext guards) {
         List<TriggerBehaviour<S, T>> possible = triggerBehaviours.get(trigger);
         if (possible == null) {
             return null;
         }
 
-        List<TriggerBehaviour<S, T>> actual = new ArrayList<>();
-        for (TriggerBehaviour<S, T> triggerBehaviour : possible) {
-            if (triggerBehaviour.isGuardConditionMet()) {
-                actual.add(triggerBehaviour);
+        // indexed loop without temporary collections: this runs on every fire(), canFire() and getPermittedTriggers()
+        boolean firstMatch = guardEvaluationPolicy == GuardEvaluationPolicy.FIRST_MATCH;
+        TriggerBehaviour<S, T> result = null;
+        for (int i = 0; i < possible.size(); i++) {
+            TriggerBehaviour<S, T> triggerBehaviour = possible.get(i);
+            if (isGuardConditionMet(triggerBehaviour, guards)) {
+                if (firstMatch) {
+                    return triggerBehaviour;
+                }
+                if (result != null) {
+                    throw multiplePermittedTransitions(state, trigger);
+                }
+                result = triggerBehaviour;
             }
         }
+        return result;
+    }
 
-        if (actual.size() > 1) {
-            throw new IllegalStateException("Multiple permitted exit transitions are configured from state '" + state + "' for trigger '" + trigger + "'. Guard clauses must be mutually exclusive.");
-        }
+    static boolean isGuardConditionMet(TriggerBehaviour<?, ?> triggerBehaviour, GuardContext guards) {
+        return guards == null ? triggerBehaviour.isGuardConditionMet() : guards.evaluate(triggerBehaviour.getGuard());
+    }
 
-        return actual.isEmpty() ? null : actual.get(0);
+    static IllegalStateException multiplePermittedTransitions(Object state, Object trigger) {
+        return new IllegalStateException("Multiple permitted exit transitions are configured from state '" + state + "' for trigger '" + trigger + "'. Guard clauses must be mutually exclusive.");
     }
 
     public void addEntryAction(final T trigger, final Action2<Transition<S, T>, Object[]> action) {
         assert action != null : ACTION_IS_NULL;
+        enforceNotFrozen();
 
         entryActions.add(new Action2<Transition<S, T>, Object[]>() {
             @Override
@@ -75,19 +155,36 @@ public class StateRepresentation<S, T> {
 
     public void addEntryAction(Action2<Transition<S, T>, Object[]> action) {
         assert action != null : ACTION_IS_NULL;
+        enforceNotFrozen();
         entryActions.add(action);
     }
 
     public void insertEntryAction(Action2<Transition<S, T>, Object[]> action) {
         assert action != null : ACTION_IS_NULL;
+        enforceNotFrozen();
         entryActions.add(0, action);
     }
 
     public void addExitAction(Action1<Transition<S, T>> action) {
         assert action != null : ACTION_IS_NULL;
+        enforceNotFrozen();
         exitActions.add(action);
     }
 
+    void addTimeout(T trigger, long delayNanos) {
+        enforceNotFrozen();
+        timeouts.add(new StateTimeout<>(trigger, delayNanos));
+    }
+
+    /**
+     * The triggers fired after this state has been occupied for a given time
+     *
+     * @return The timeouts armed on entry to this state
+     */
+    List<StateTimeout<T>> getTimeouts() {
+        return timeouts;
+    }
+
     public void enter(Transition<S, T> transition, Object... entryArgs) {
         assert transition != null : TRANSITION_IS_NULL;
 
@@ -115,6 +212,14 @@ public class StateRepresentation<S, T> {
         }
     }
 
+    List<Action2<Transition<S, T>, Object[]>> getEntryActions() {
+        return entryActions;
+    }
+
+    List<Action1<Transition<S, T>>> getExitActions() {
+        return exitActions;
+    }
+
     void executeEntryActions(Transition<S, T> transition, Object[] entryArgs) {
         assert transition != null : TRANSITION_IS_NULL;
         assert entryArgs != null : "entryArgs is null";
@@ -131,6 +236,7 @@ public class StateRepresentation<S, T> {
     }
 
     public void addTriggerBehaviour(TriggerBehaviour<S, T> triggerBehaviour) {
+        enforceNotFrozen();
         List<TriggerBehaviour<S, T>> allowed;
         if (!triggerBehaviours.containsKey(triggerBehaviour.getTrigger())) {
             allowed = new ArrayList<>();
@@ -145,19 +251,35 @@ public class StateRepresentation<S, T> {
     }
 
     public void setSuperstate(StateRepresentation<S, T> value) {
+        enforceNotFrozen();
         superstate = value;
     }
 
+    public GuardEvaluationPolicy getGuardEvaluationPolicy() {
+        return guardEvaluationPolicy;
+    }
+
+    public void setGuardEvaluationPolicy(GuardEvaluationPolicy value) {
+        assert value != null : "guardEvaluationPolicy is null";
+        enforceNotFrozen();
+        guardEvaluationPolicy = value;
+    }
+
     public S getUnderlyingState() {
         return state;
     }
 
     public void addSubstate(StateRepresentation<S, T> substate) {
         assert substate != null : "substate is null";
+        enforceNotFrozen();
         substates.add(substate);
     }
 
     public boolean includes(S stateToCheck) {
+        if (owner != null) {
+            StateRepresentation<S, T> other = owner.getRepresentation(stateToCheck);
+            return other != null && includes(other);
+        }
         for (StateRepresentation<S, T> s : substates) {
             if (s.includes(stateToCheck)) {
                 return true;
@@ -167,26 +289,265 @@ public class StateRepresentation<S, T> {
     }
 
     public boolean isIncludedIn(S stateToCheck) {
+        if (owner != null) {
+            StateRepresentation<S, T> other = owner.getRepresentation(stateToCheck);
+            return other != null && other.includes(this);
+        }
         return this.state != null && this.state.equals(stateToCheck) || (superstate != null && superstate.isIncludedIn(stateToCheck));
     }
 
-    @SuppressWarnings("unchecked")
     public List<T> getPermittedTriggers() {
+        return getPermittedTriggers(null);
+    }
+
+    List<T> getPermittedTriggers(GuardContext guards) {
+        if (compiledHandlers != null) {
+            List<T> permitted = new ArrayList<>();
+            for (Map.Entry<T, HandlerChain<S, T>> entry : compiledHandlers.entrySet()) {
+                if (entry.getValue().isAnyGuardConditionMet(guards)) {
+                    permitted.add(entry.getKey());
+                }
+            }
+            return permitted;
+        }
+
         Set<T> result = new HashSet<>();
 
-        for (T t : triggerBehaviours.keySet()) {
-            for (TriggerBehaviour<S, T> v : triggerBehaviours.get(t)) {
-                if (v.isGuardConditionMet()) {
-                    result.add(t);
+        for (Map.Entry<T, List<TriggerBehaviour<S, T>>> entry : triggerBehaviours.entrySet()) {
+            List<TriggerBehaviour<S, T>> behaviours = entry.getValue();
+            for (int i = 0; i < behaviours.size(); i++) {
+                if (isGuardConditionMet(behaviours.get(i), guards)) {
+                    result.add(entry.getKey());
                     break;
                 }
             }
         }
 
         if (getSuperstate() != null) {
-            result.addAll(getSuperstate().getPermittedTriggers());
+            result.addAll(getSuperstate().getPermittedTriggers(guards));
         }
 
         return new ArrayList<>(result);
     }
+
+    /**
+     * True once the owning configuration has been frozen
+     *
+     * @return True if this representation can no longer be modified
+     */
+    public boolean isFrozen() {
+        return compiledHandlers != null;
+    }
+
+    /**
+     * Merge the handlers of this state with the handlers inherited from its superstates and make the
+     * representation immutable. Called by {@link StateMachineConfig#freeze()}.
+     */
+    void freeze() {
+        if (compiledHandlers != null) {
+            return;
+        }
+        Map<T, List<StateRepresentation<S, T>>> owners = new HashMap<>();
+        for (StateRepresentation<S, T> s = this; s != null; s = s.superstate) {
+            for (T trigger : s.triggerBehaviours.keySet()) {
+                List<StateRepresentation<S, T>> chain = owners.get(trigger);
+                if (chain == null) {
+                    chain = new ArrayList<>();
+                    owners.put(trigger, chain);
+                }
+                chain.add(s);
+            }
+        }
+
+        Map<T, HandlerChain<S, T>> compiled = new HashMap<>();
+        for (Map.Entry<T, List<StateRepresentation<S, T>>> entry : owners.entrySet()) {
+            List<StateRepresentation<S, T>> chain = entry.getValue();
+            @SuppressWarnings("unchecked")
+            S[] states = (S[]) new Object[chain.size()];
+            @SuppressWarnings("unchecked")
+            TriggerBehaviour<S, T>[][] levels = (TriggerBehaviour<S, T>[][]) new TriggerBehaviour<?, ?>[chain.size()][];
+            for (int i = 0; i < chain.size(); i++) {
+                StateRepresentation<S, T> owner = chain.get(i);
+                states[i] = owner.state;
+                List<TriggerBehaviour<S, T>> behaviours = owner.triggerBehaviours.get(entry.getKey());
+                @SuppressWarnings("unchecked")
+                TriggerBehaviour<S, T>[] level = (TriggerBehaviour<S, T>[]) new TriggerBehaviour<?, ?>[behaviours.size()];
+                levels[i] = behaviours.toArray(level);
+            }
+            compiled.put(entry.getKey(), new HandlerChain<>(states, levels, guardEvaluationPolicy));
+        }
+        compiledHandlers = compiled;
+    }
+
+    /**
+     * Constant-time check whether {@code other} is this state or one of its substates. Both
+     * representations must have been numbered by {@link #numberStateTree(int, StateMachineConfig)}.
+     *
+     * @param other The representation to check
+     * @return True if {@code other} is included in this state
+     */
+    boolean includes(StateRepresentation<S, T> other) {
+        return treeIndex <= other.treeIndex && other.treeIndex <= treeEnd;
+    }
+
+    /**
+     * Position of this state in the pre-order numbering of the frozen configuration. Numbers are dense,
+     * starting at zero, and unique among the configured states.
+     *
+     * @return The number of this state, or -1 if the configuration is not frozen
+     */
+    int getTreeIndex() {
+        return treeIndex;
+    }
+
+    /**
+     * Number this state and its substates in pre-order, so that {@link #includes(Object)} and
+     * {@link #isIncludedIn(Object)} become interval comparisons.
+     *
+     * @param next   The first free number
+     * @param config The configuration used to resolve states to representations
+     * @return The next free number after this subtree
+     */
+    int numberStateTree(int next, StateMachineConfig<S, T> config) {
+        owner = config;
+        treeIndex = next++;
+        for (StateRepresentation<S, T> substate : substates) {
+            // substates are registered each time substateOf() is called; only follow the effective link once
+            if (substate.superstate == this && substate.owner == null) {
+                next = substate.numberStateTree(next, config);
+            }
+        }
+        treeEnd = next - 1;
+        return next;
+    }
+
+    /**
+     * Index the compiled handlers by trigger ordinal, so that dispatch on enum triggers needs no hashing.
+     * Must be called after {@link #freeze()}.
+     *
+     * @param triggers All constants of the trigger enum
+     */
+    void indexHandlersByOrdinal(T[] triggers) {
+        assert compiledHandlers != null : "representation is not frozen";
+        @SuppressWarnings("unchecked")
+        HandlerChain<S, T>[] table = (HandlerChain<S, T>[]) new HandlerChain<?, ?>[triggers.length];
+        for (T trigger : triggers) {
+            table[((Enum<?>) trigger).ordinal()] = compiledHandlers.get(trigger);
+        }
+        compiledHandlersByOrdinal = table;
+    }
+
+    /**
+     * Precompute the exit and entry actions of every static transition leaving this state, including
+     * transitions inherited from superstates. Must be called after all representations are frozen.
+     *
+     * @param config The configuration this representation belongs to
+     */
+    void compileTransitionPaths(StateMachineConfig<S, T> config) {
+        assert compiledHandlers != null : "representation is not frozen";
+        List<S> destinations = new ArrayList<>();
+        for (HandlerChain<S, T> chain : compiledHandlers.values()) {
+            for (TriggerBehaviour<S, T>[] level : chain.levels) {
+                for (TriggerBehaviour<S, T> behaviour : level) {
+                    if (behaviour instanceof TransitioningTriggerBehaviour) {
+                        S destination = behaviour.transitionsTo(state, null);
+                        if (!destinations.contains(destination)) {
+                            destinations.add(destination);
+                        }
+                    }
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        TransitionPath<S, T>[] paths = (TransitionPath<S, T>[]) new TransitionPath<?, ?>[destinations.size()];
+        for (int i = 0; i < paths.length; i++) {
+            S destination = destinations.get(i);
+            paths[i] = TransitionPath.between(this, destination, config.getRepresentation(destination));
+        }
+        pathDestinations = destinations.toArray();
+        transitionPaths = paths;
+    }
+
+    /**
+     * Find the precomputed path from this state to {@code destination}
+     *
+     * @param destination The destination state
+     * @return The path, or null if it has not been precomputed
+     */
+    TransitionPath<S, T> findTransitionPath(S destination) {
+        if (transitionPaths == null) {
+            return null;
+        }
+        for (int i = 0; i < pathDestinations.length; i++) {
+            if (pathDestinations[i] == destination || pathDestinations[i].equals(destination)) {
+                return transitionPaths[i];
+            }
+        }
+        return null;
+    }
+
+    private HandlerChain<S, T> findHandlerChain(T trigger) {
+        if (compiledHandlersByOrdinal != null && trigger != null) {
+            return compiledHandlersByOrdinal[((Enum<?>) trigger).ordinal()];
+        }
+        return compiledHandlers.get(trigger);
+    }
+
+    private void enforceNotFrozen() {
+        if (compiledHandlers != null) {
+            throw new IllegalStateException("State '" + state + "' belongs to a frozen configuration and can no longer be modified.");
+        }
+    }
+
+    /**
+     * The handlers for one trigger, ordered from the most specific state up to the root superstate.
+     * Only states that actually handle the trigger are present.
+     */
+    static final class HandlerChain<S, T> {
+
+        private final S[] states;
+        private final TriggerBehaviour<S, T>[][] levels;
+        private final boolean firstMatch;
+
+        HandlerChain(S[] states, TriggerBehaviour<S, T>[][] levels, GuardEvaluationPolicy guardEvaluationPolicy) {
+            this.states = states;
+            this.levels = levels;
+            this.firstMatch = guardEvaluationPolicy == GuardEvaluationPolicy.FIRST_MATCH;
+        }
+
+        TriggerBehaviour<S, T> tryFindHandler(T trigger, GuardContext guards) {
+            for (int i = 0; i < levels.length; i++) {
+                TriggerBehaviour<S, T>[] level = levels[i];
+                TriggerBehaviour<S, T> result = null;
+                for (int j = 0; j < level.length; j++) {
+                    if (isGuardConditionMet(level[j], guards)) {
+                        if (firstMatch) {
+                            return level[j];
+                        }
+                        if (result != null) {
+                            throw multiplePermittedTransitions(states[i], trigger);
+                        }
+                        result = level[j];
+                    }
+                }
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+        boolean isAnyGuardConditionMet(GuardContext guards) {
+            for (int i = 0; i < levels.length; i++) {
+                TriggerBehaviour<S, T>[] level = levels[i];
+                for (int j = 0; j < level.length; j++) {
+                    if (isGuardConditionMet(level[j], guards)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
 }
@@ -0,0 +1,34 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * Storage for the states of the instances of a {@link StateMachineFleet}. Each instance owns one slot
+ * holding a small, non-negative state code assigned by the fleet.
+ * <p>
+ * Slots are addressed by {@code int}, like the arrays and buffers that back them, so a store holds at
+ * most {@link Integer#MAX_VALUE} instances. Larger populations are split across several fleets.
+ */
+public interface StateStore {
+
+    /**
+     * The number of slots
+     *
+     * @return The number of slots
+     */
+    int size();
+
+    /**
+     * Read the state code held in a slot
+     *
+     * @param slot The slot
+     * @return The state code
+     */
+    int get(int slot);
+
+    /**
+     * Write the state code held in a slot
+     *
+     * @param slot The slot
+     * @param code The state code
+     */
+    void set(int slot, int code);
+}
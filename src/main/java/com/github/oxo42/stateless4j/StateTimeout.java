@@ -0,0 +1,26 @@
+package com.github.oxo42.stateless4j;
+
+/**
+ * A trigger fired once its state has been occupied for a given time, as configured by
+ * {@link StateConfiguration#permitAfter(java.time.Duration, Object, Object)}
+ *
+ * @param <T> The type used to represent the triggers
+ */
+final class StateTimeout<T> {
+
+    private final T trigger;
+    private final long delayNanos;
+
+    StateTimeout(T trigger, long delayNanos) {
+        this.trigger = trigger;
+        this.delayNanos = delayNanos;
+    }
+
+    T getTrigger() {
+        return trigger;
+    }
+
+    long getDelayNanos() {
+        return delayNanos;
+    }
+}
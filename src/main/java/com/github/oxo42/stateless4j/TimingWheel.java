@@ -0,0 +1,318 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.FuncLong;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed hierarchical timing wheel, scheduling large numbers of timeouts with O(1) arming and
+ * cancellation.
+ * <p>
+ * Time is divided into ticks of a fixed duration. Timeouts due within the next 64 ticks are kept in the
+ * 64 slots of the first wheel, those due within the next 64<sup>2</sup> ticks in the second wheel, and so
+ * on over six wheels; further timeouts wait in an overflow list. Whenever a wheel completes a turn, the
+ * timeouts of the next slot of the wheel above, or of the overflow list, are redistributed over the
+ * wheels below. A timeout fires on the first call to {@link #advance()} made at least its delay after it
+ * was scheduled, rounded up to whole ticks.
+ * <p>
+ * Nothing happens in the background: timeouts only expire when {@link #advance()} is called, typically
+ * once per tick from a scheduled executor, and their tasks run on the thread calling it. The clock is
+ * pluggable, so tests can advance time deterministically. Scheduling, cancelling and advancing may
+ * happen on different threads.
+ */
+public class TimingWheel {
+
+    private static final int LEVEL_BITS = 6;
+    private static final int SLOTS = 1 << LEVEL_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+
+    private static final int PENDING = 0;
+    private static final int EXPIRED = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private final FuncLong clock;
+    private final long tickNanos;
+    private final long origin;
+    private static final int OVERFLOW = LEVELS * SLOTS;
+
+    private final Timeout[] slots = new Timeout[LEVELS * SLOTS + 1];
+    private final int[] levelSizes = new int[LEVELS + 1];
+    private long now = 0;
+    private int pending = 0;
+
+    /**
+     * Create a wheel measuring time with {@link System#nanoTime()}
+     *
+     * @param tickDuration The duration of a tick, the resolution of the wheel
+     * @param unit         The unit of {@code tickDuration}
+     */
+    public TimingWheel(long tickDuration, TimeUnit unit) {
+        this(tickDuration, unit, new FuncLong() {
+            @Override
+            public long call() {
+                return System.nanoTime();
+            }
+        });
+    }
+
+    /**
+     * Create a wheel
+     *
+     * @param tickDuration The duration of a tick, the resolution of the wheel
+     * @param unit         The unit of {@code tickDuration}
+     * @param clock        A monotonic clock returning the current time in nanoseconds
+     */
+    public TimingWheel(long tickDuration, TimeUnit unit, FuncLong clock) {
+        assert unit != null : "unit is null";
+        assert clock != null : "clock is null";
+        this.tickNanos = unit.toNanos(tickDuration);
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        this.clock = clock;
+        this.origin = clock.call();
+        for (int i = 0; i < slots.length; i++) {
+            Timeout sentinel = new Timeout(this, 0, null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            slots[i] = sentinel;
+        }
+    }
+
+    /**
+     * Schedule a task
+     *
+     * @param delay The time after which the task runs
+     * @param unit  The unit of {@code delay}
+     * @param task  The task to run
+     * @return A handle to cancel the task
+     */
+    public Timeout schedule(long delay, TimeUnit unit, Action task) {
+        assert unit != null : "unit is null";
+        assert task != null : "task is null";
+        long delayNanos = Math.max(0, unit.toNanos(delay));
+        long deadline = (clock.call() - origin + delayNanos + tickNanos - 1) / tickNanos;
+        Timeout timeout = new Timeout(this, deadline, task);
+        synchronized (this) {
+            if (timeout.deadline <= now) {
+                timeout.deadline = now + 1;
+            }
+            insert(timeout);
+            pending++;
+        }
+        return timeout;
+    }
+
+    /**
+     * Expire the timeouts that are due, running their tasks on the calling thread in the order of their
+     * deadlines. A task cancelled by an earlier task of the same call does not run. A task throwing does not
+     * stop the others: the first exception is rethrown once they have all run, with any later ones added
+     * as suppressed.
+     *
+     * @return The number of tasks run
+     */
+    public int advance() {
+        long target = (clock.call() - origin) / tickNanos;
+        List<Timeout> expired = null;
+        synchronized (this) {
+            while (now < target) {
+                long next = nextEventTick();
+                if (next > target) {
+                    now = target;
+                    break;
+                }
+                now = next;
+                cascade();
+                Timeout sentinel = slots[(int) now & SLOT_MASK];
+                while (sentinel.next != sentinel) {
+                    Timeout timeout = sentinel.next;
+                    unlink(timeout);
+                    timeout.state = EXPIRED;
+                    pending--;
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(timeout);
+                }
+            }
+        }
+        if (expired == null) {
+            return 0;
+        }
+        int run = 0;
+        RuntimeException failure = null;
+        for (Timeout timeout : expired) {
+            synchronized (this) {
+                if (timeout.state != EXPIRED) {
+                    continue;
+                }
+                timeout.state = DONE;
+            }
+            run++;
+            try {
+                timeout.task.doIt();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return run;
+    }
+
+    /**
+     * The number of scheduled timeouts that have neither expired nor been cancelled
+     *
+     * @return The number of pending timeouts
+     */
+    public synchronized int size() {
+        return pending;
+    }
+
+    private boolean cancel(Timeout timeout) {
+        synchronized (this) {
+            if (timeout.state == PENDING) {
+                unlink(timeout);
+                pending--;
+            } else if (timeout.state != EXPIRED) {
+                return false;
+            }
+            timeout.state = CANCELLED;
+            return true;
+        }
+    }
+
+    /**
+     * The next tick at which a timeout may expire or cascade. While the lower wheels are empty, nothing
+     * happens before the lowest non-empty wheel reaches its next slot, so idle stretches are skipped.
+     */
+    private long nextEventTick() {
+        if (levelSizes[0] != 0) {
+            return now + 1;
+        }
+        for (int level = 1; level <= LEVELS; level++) {
+            if (levelSizes[level] != 0) {
+                int shift = level * LEVEL_BITS;
+                return ((now >>> shift) + 1) << shift;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Move the timeouts of every wheel that has just reached its next slot down to the wheels below,
+     * starting from the highest one so that they can cascade several levels in one tick. The overflow
+     * list is redistributed each time the last wheel completes a turn.
+     */
+    private void cascade() {
+        int levels = 1;
+        while (levels <= LEVELS && (now & ((1L << (levels * LEVEL_BITS)) - 1)) == 0) {
+            levels++;
+        }
+        for (int level = levels - 1; level > 0; level--) {
+            int index = level == LEVELS ? OVERFLOW : level * SLOTS + ((int) (now >>> (level * LEVEL_BITS)) & SLOT_MASK);
+            Timeout sentinel = slots[index];
+            Timeout timeout = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            while (timeout != sentinel) {
+                levelSizes[level]--;
+                Timeout next = timeout.next;
+                insert(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Add a timeout to the wheel of the highest digit in which its deadline differs from the current
+     * tick, or to the overflow list if that digit is beyond the last wheel.
+     */
+    private void insert(Timeout timeout) {
+        long difference = timeout.deadline ^ now;
+        int level = difference == 0 ? 0 : (63 - Long.numberOfLeadingZeros(difference)) / LEVEL_BITS;
+        int index;
+        if (level >= LEVELS) {
+            level = LEVELS;
+            index = OVERFLOW;
+        } else {
+            index = level * SLOTS + ((int) (timeout.deadline >>> (level * LEVEL_BITS)) & SLOT_MASK);
+        }
+        Timeout sentinel = slots[index];
+        timeout.level = level;
+        levelSizes[level]++;
+        timeout.prev = sentinel.prev;
+        timeout.next = sentinel;
+        sentinel.prev.next = timeout;
+        sentinel.prev = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        levelSizes[timeout.level]--;
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    /**
+     * A scheduled task
+     */
+    public static final class Timeout {
+
+        private final TimingWheel wheel;
+        private final Action task;
+        private long deadline;
+        private int level;
+        private Timeout prev;
+        private Timeout next;
+        private int state = PENDING;
+
+        private Timeout(TimingWheel wheel, long deadline, Action task) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * Cancel the task unless it has already run
+         *
+         * @return True if the task will not run
+         */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+
+        /**
+         * True if the task has been cancelled
+         *
+         * @return True if the task has been cancelled
+         */
+        public boolean isCancelled() {
+            synchronized (wheel) {
+                return state == CANCELLED;
+            }
+        }
+
+        /**
+         * True if the task has run or is running
+         *
+         * @return True if the task has run
+         */
+        public boolean isDone() {
+            synchronized (wheel) {
+                return state == DONE;
+            }
+        }
+    }
+}
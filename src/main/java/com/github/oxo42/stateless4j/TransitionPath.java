@@ -0,0 +1,85 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.transitions.Transition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The exit and entry actions run by a transition between two given states, flattened into arrays.
+ * <p>
+ * Exit actions are ordered from the source state up to, but excluding, the first superstate that also
+ * contains the destination. Entry actions are ordered from the topmost superstate being entered down to
+ * the destination. This is exactly the order in which {@link StateRepresentation#exit(Transition)} and
+ * {@link StateRepresentation#enter(Transition, Object...)} run them.
+ */
+final class TransitionPath<S, T> {
+
+    private final Action1<Transition<S, T>>[] exitActions;
+    private final Action2<Transition<S, T>, Object[]>[] entryActions;
+
+    private TransitionPath(Action1<Transition<S, T>>[] exitActions, Action2<Transition<S, T>, Object[]>[] entryActions) {
+        this.exitActions = exitActions;
+        this.entryActions = entryActions;
+    }
+
+    /**
+     * Compute the path from {@code source} to {@code destination}
+     *
+     * @param source      Representation of the source state
+     * @param destination Destination state
+     * @param target      Representation of the destination state, or null if it is not configured
+     * @return The path
+     */
+    static <S, T> TransitionPath<S, T> between(StateRepresentation<S, T> source, S destination, StateRepresentation<S, T> target) {
+        S sourceState = source.getUnderlyingState();
+        List<Action1<Transition<S, T>>> exits = new ArrayList<>();
+        List<Action2<Transition<S, T>, Object[]>> entries = new ArrayList<>();
+
+        if (sourceState != null && sourceState.equals(destination)) {
+            exits.addAll(source.getExitActions());
+            entries.addAll(source.getEntryActions());
+        } else {
+            for (StateRepresentation<S, T> s = source; s != null && !s.includes(destination); s = s.getSuperstate()) {
+                exits.addAll(s.getExitActions());
+            }
+            List<StateRepresentation<S, T>> entered = new ArrayList<>();
+            for (StateRepresentation<S, T> d = target; d != null && !d.includes(sourceState); d = d.getSuperstate()) {
+                entered.add(d);
+            }
+            Collections.reverse(entered);
+            for (StateRepresentation<S, T> d : entered) {
+                entries.addAll(d.getEntryActions());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Action1<Transition<S, T>>[] exitActions = (Action1<Transition<S, T>>[]) new Action1<?>[exits.size()];
+        @SuppressWarnings("unchecked")
+        Action2<Transition<S, T>, Object[]>[] entryActions = (Action2<Transition<S, T>, Object[]>[]) new Action2<?, ?>[entries.size()];
+        return new TransitionPath<>(exits.toArray(exitActions), entries.toArray(entryActions));
+    }
+
+    Action1<Transition<S, T>>[] getExitActions() {
+        return exitActions;
+    }
+
+    Action2<Transition<S, T>, Object[]>[] getEntryActions() {
+        return entryActions;
+    }
+
+    void exit(Transition<S, T> transition) {
+        for (Action1<Transition<S, T>> action : exitActions) {
+            action.doIt(transition);
+        }
+    }
+
+    void enter(Transition<S, T> transition, Object[] entryArgs) {
+        for (Action2<Transition<S, T>, Object[]> action : entryActions) {
+            action.doIt(transition, entryArgs);
+        }
+    }
+}
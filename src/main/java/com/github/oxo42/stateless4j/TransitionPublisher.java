@@ -0,0 +1,120 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Trace;
+import com.github.oxo42.stateless4j.transitions.TransitionEvent;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+/**
+ * Publishes the transitions of a machine or fleet as a {@link Flow.Publisher}, so that consumers such as
+ * audit writers or metrics aggregators can process them at their own pace.
+ * <p>
+ * Install it with {@code setTrace} on a {@link StateMachine}, {@link ConcurrentStateMachine} or
+ * {@link StateMachineFleet}. Events are delivered to each subscriber on the executor, honouring the
+ * demand it signals. Every subscriber has its own buffer of bounded capacity; publishing never blocks
+ * the firing thread, and an event that does not fit in a subscriber's buffer is dropped for that
+ * subscriber and counted in {@link #getDroppedCount()}. Nothing is published while there are no
+ * subscribers.
+ *
+ * @param <S> The type used to represent the states
+ * @param <T> The type used to represent the triggers that cause state transitions
+ */
+public class TransitionPublisher<S, T> implements Trace<S, T>, Flow.Publisher<TransitionEvent<S, T>>, AutoCloseable {
+
+    private final SubmissionPublisher<TransitionEvent<S, T>> publisher;
+    private final StateMachineFleet<S, T> fleet;
+    private final AtomicLong dropped = new AtomicLong();
+    private final BiPredicate<Flow.Subscriber<? super TransitionEvent<S, T>>, TransitionEvent<S, T>> onDrop =
+            new BiPredicate<Flow.Subscriber<? super TransitionEvent<S, T>>, TransitionEvent<S, T>>() {
+                @Override
+                public boolean test(Flow.Subscriber<? super TransitionEvent<S, T>> subscriber, TransitionEvent<S, T> event) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            };
+
+    /**
+     * Create a publisher for a single machine, delivering on the common pool with the default buffer capacity
+     */
+    public TransitionPublisher() {
+        this(null, ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * Create a publisher for a single machine
+     *
+     * @param executor       The executor delivering events to subscribers
+     * @param bufferCapacity The maximum number of events buffered per subscriber, rounded up to a power of two
+     */
+    public TransitionPublisher(Executor executor, int bufferCapacity) {
+        this(null, executor, bufferCapacity);
+    }
+
+    /**
+     * Create a publisher for a fleet, whose events carry the index of the instance that transitioned.
+     * The publisher still has to be installed with {@link StateMachineFleet#setTrace(Trace)}.
+     *
+     * @param fleet          The fleet whose transitions are published
+     * @param executor       The executor delivering events to subscribers
+     * @param bufferCapacity The maximum number of events buffered per subscriber, rounded up to a power of two
+     */
+    public TransitionPublisher(StateMachineFleet<S, T> fleet, Executor executor, int bufferCapacity) {
+        assert executor != null : "executor is null";
+        this.fleet = fleet;
+        this.publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TransitionEvent<S, T>> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    @Override
+    public void trigger(T trigger) {
+    }
+
+    @Override
+    public void transition(T trigger, S source, S destination) {
+        if (!publisher.hasSubscribers() || publisher.isClosed()) {
+            return;
+        }
+        int instance = fleet != null ? fleet.getCurrentInstance() : -1;
+        TransitionEvent<S, T> event = new TransitionEvent<>(source, destination, trigger, instance, System.currentTimeMillis());
+        try {
+            publisher.offer(event, onDrop);
+        } catch (IllegalStateException e) {
+            // closed concurrently
+        }
+    }
+
+    /**
+     * The number of events dropped because a subscriber's buffer was full, summed over all subscribers
+     *
+     * @return The number of dropped events
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * The number of current subscribers
+     *
+     * @return The number of subscribers
+     */
+    public int getNumberOfSubscribers() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    /**
+     * Stop publishing and complete every subscriber once its buffered events are delivered
+     */
+    @Override
+    public void close() {
+        publisher.close();
+    }
+}
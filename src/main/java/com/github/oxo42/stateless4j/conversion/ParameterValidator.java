@@ -0,0 +1,83 @@
+package com.github.oxo42.stateless4j.conversion;
+
+import java.lang.reflect.Modifier;
+
+/**
+ * Checks the arguments of a trigger against the types configured for it, like
+ * {@link ParameterConversion#validate(Object[], Class[])}, with the checks prepared once per trigger.
+ * <p>
+ * An argument of exactly the expected class is accepted with a reference comparison. Parameters of type
+ * {@code Object} accept anything, and parameters of a final class accept nothing else. For other
+ * parameters, including arrays, which are final but covariant, whether a given runtime class is a subtype
+ * of the expected one is computed once and cached in a {@link ClassValue}.
+ */
+public final class ParameterValidator {
+
+    private final Class<?>[] expected;
+    private final boolean[] acceptsAny;
+    private final ClassValue<Boolean>[] subtypes;
+
+    private ParameterValidator(Class<?>[] expected) {
+        this.expected = expected.clone();
+        this.acceptsAny = new boolean[expected.length];
+        @SuppressWarnings("unchecked")
+        ClassValue<Boolean>[] subtypes = (ClassValue<Boolean>[]) new ClassValue<?>[expected.length];
+        this.subtypes = subtypes;
+        for (int i = 0; i < expected.length; i++) {
+            final Class<?> type = expected[i];
+            if (type == Object.class) {
+                acceptsAny[i] = true;
+            } else if (type.isArray() || !Modifier.isFinal(type.getModifiers())) {
+                subtypes[i] = new ClassValue<Boolean>() {
+                    @Override
+                    protected Boolean computeValue(Class<?> actual) {
+                        return type.isAssignableFrom(actual);
+                    }
+                };
+            }
+        }
+    }
+
+    /**
+     * Prepare the checks for the given parameter types
+     *
+     * @param expected The types of the parameters, in order
+     * @return A validator for arguments of these types
+     */
+    public static ParameterValidator compile(Class<?>... expected) {
+        assert expected != null : "expected is null";
+        return new ParameterValidator(expected);
+    }
+
+    /**
+     * Ensure that the supplied arguments are compatible with the parameter types
+     *
+     * @param args The arguments
+     */
+    public void validate(Object[] args) {
+        assert args != null : "args is null";
+        if (args.length > expected.length) {
+            throw new IllegalStateException(
+                    String.format("Too many parameters have been supplied. Expecting %s but got %s.", expected.length, args.length));
+        }
+        if (args.length < expected.length) {
+            throw new IllegalStateException(
+                    String.format("An argument of type %s is required in position %s.", expected[args.length], args.length));
+        }
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null || acceptsAny[i]) {
+                continue;
+            }
+            Class<?> actual = arg.getClass();
+            if (actual == expected[i]) {
+                continue;
+            }
+            ClassValue<Boolean> subtype = subtypes[i];
+            if (subtype == null || !subtype.get(actual)) {
+                throw new IllegalStateException(
+                        String.format("The argument in position %s is of type %s but must be of type %s.", i, actual, expected[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.oxo42.stateless4j.delegates;
+
+/**
+ * Represents an operation that accepts a {@code int} input and returns no result
+ */
+@FunctionalInterface
+public interface ActionInt {
+
+    /**
+     * Performs this operation on the given input
+     *
+     * @param arg1 Input argument
+     */
+    void doIt(int arg1);
+}
@@ -0,0 +1,15 @@
+package com.github.oxo42.stateless4j.delegates;
+
+/**
+ * Represents an operation that accepts a {@code long} input and returns no result
+ */
+@FunctionalInterface
+public interface ActionLong {
+
+    /**
+     * Performs this operation on the given input
+     *
+     * @param arg1 Input argument
+     */
+    void doIt(long arg1);
+}
@@ -0,0 +1,6 @@
+package com.github.oxo42.stateless4j.delegates;
+
+@FunctionalInterface
+public interface FuncLong {
+    long call();
+}
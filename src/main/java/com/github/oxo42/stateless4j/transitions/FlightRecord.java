@@ -0,0 +1,102 @@
+package com.github.oxo42.stateless4j.transitions;
+
+import com.github.oxo42.stateless4j.FireResult;
+
+/**
+ * A fire kept by a {@link com.github.oxo42.stateless4j.FlightRecorder}. Fires that did not transition
+ * have the same source and destination.
+ *
+ * @param <S> State type
+ * @param <T> Trigger type
+ */
+public class FlightRecord<S, T> extends Transition<S, T> {
+
+    private final long sequence;
+    private final int instance;
+    private final long timestamp;
+    private final long duration;
+    private final FireResult outcome;
+
+    /**
+     * Construct a flight record
+     *
+     * @param source      The state the trigger was fired in
+     * @param destination The state transitioned to
+     * @param trigger     The trigger fired
+     * @param sequence    The position of the fire among all fires recorded
+     * @param instance    The fleet instance fired, or -1 for a single machine
+     * @param timestamp   The time the fire started, in milliseconds since the epoch
+     * @param duration    The time the fire took, in nanoseconds
+     * @param outcome     The outcome of the fire, or null if it threw
+     */
+    public FlightRecord(S source, S destination, T trigger, long sequence, int instance, long timestamp, long duration, FireResult outcome) {
+        super(source, destination, trigger);
+        this.sequence = sequence;
+        this.instance = instance;
+        this.timestamp = timestamp;
+        this.duration = duration;
+        this.outcome = outcome;
+    }
+
+    /**
+     * The position of the fire among all fires recorded, starting at 0. Fires are numbered in the order
+     * they completed, so a fire made from an action comes before the fire running that action.
+     *
+     * @return The sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * The fleet instance fired
+     *
+     * @return The instance index, or -1 if the fire was not performed by a fleet
+     */
+    public int getInstance() {
+        return instance;
+    }
+
+    /**
+     * The time the fire started
+     *
+     * @return The time the fire started, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * The time the fire took, including entry, exit and transition actions
+     *
+     * @return The duration in nanoseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * The outcome of the fire
+     *
+     * @return The outcome, or null if the fire threw
+     */
+    public FireResult getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Whether the fire threw, from a guard or an action
+     *
+     * @return True if the fire threw
+     */
+    public boolean isFailed() {
+        return outcome == null;
+    }
+
+    @Override
+    public String toString() {
+        return "FlightRecord{sequence=" + sequence + ", instance=" + instance + ", trigger=" + getTrigger()
+                + ", source=" + getSource() + ", destination=" + getDestination() + ", outcome=" + outcome
+                + ", timestamp=" + timestamp + ", duration=" + duration + '}';
+    }
+}
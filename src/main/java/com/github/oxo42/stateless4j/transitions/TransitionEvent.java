@@ -0,0 +1,53 @@
+package com.github.oxo42.stateless4j.transitions;
+
+/**
+ * A transition that has been performed, as published to subscribers of a
+ * {@link com.github.oxo42.stateless4j.TransitionPublisher}
+ *
+ * @param <S> State type
+ * @param <T> Trigger type
+ */
+public class TransitionEvent<S, T> extends Transition<S, T> {
+
+    private final int instance;
+    private final long timestamp;
+
+    /**
+     * Construct a transition event
+     *
+     * @param source      The state transitioned from
+     * @param destination The state transitioned to
+     * @param trigger     The trigger that caused the transition
+     * @param instance    The fleet instance that transitioned, or -1 for a single machine
+     * @param timestamp   The time of the transition, in milliseconds since the epoch
+     */
+    public TransitionEvent(S source, S destination, T trigger, int instance, long timestamp) {
+        super(source, destination, trigger);
+        this.instance = instance;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * The fleet instance that transitioned
+     *
+     * @return The instance index, or -1 if the transition was not performed by a fleet
+     */
+    public int getInstance() {
+        return instance;
+    }
+
+    /**
+     * The time of the transition
+     *
+     * @return The time of the transition, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "TransitionEvent{instance=" + instance + ", trigger=" + getTrigger() + ", source=" + getSource()
+                + ", destination=" + getDestination() + ", timestamp=" + timestamp + '}';
+    }
+}
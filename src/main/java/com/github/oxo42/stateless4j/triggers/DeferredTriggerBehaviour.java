@@ -0,0 +1,21 @@
+package com.github.oxo42.stateless4j.triggers;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
+
+/**
+ * Keeps a trigger for later instead of handling it: the machine stores it and fires it again once a
+ * transition has led to a state that no longer defers it.
+ */
+public class DeferredTriggerBehaviour<S, T> extends InternalTriggerBehaviour<S, T> {
+
+    private static final Action NO_ACTION = new Action() {
+        @Override
+        public void doIt() {
+        }
+    };
+
+    public DeferredTriggerBehaviour(T trigger, FuncBoolean guard) {
+        super(trigger, guard, NO_ACTION);
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.oxo42.stateless4j.triggers;
+
+/**
+ * A trigger carrying a single {@code double} argument, fired without boxing it
+ *
+ * @param <TTrigger> The type used to represent the triggers
+ */
+public class DoubleTrigger<TTrigger> extends TriggerWithParameters<TTrigger> {
+
+    /**
+     * Create a configured trigger
+     *
+     * @param underlyingTrigger Trigger represented by this trigger configuration
+     */
+    public DoubleTrigger(TTrigger underlyingTrigger) {
+        super(underlyingTrigger, double.class);
+    }
+
+    /**
+     * Ensure that the single argument is a {@code double}, held by a {@link PrimitiveArgument} or boxed
+     *
+     * @param args Args
+     */
+    @Override
+    public void validateParameters(Object[] args) {
+        PrimitiveArgument.validate(args, double.class, Double.class);
+    }
+}
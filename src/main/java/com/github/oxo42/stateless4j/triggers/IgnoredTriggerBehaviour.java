@@ -0,0 +1,17 @@
+package com.github.oxo42.stateless4j.triggers;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
+
+public class IgnoredTriggerBehaviour<S, T> extends InternalTriggerBehaviour<S, T> {
+
+    private static final Action NO_ACTION = new Action() {
+        @Override
+        public void doIt() {
+        }
+    };
+
+    public IgnoredTriggerBehaviour(T trigger, FuncBoolean guard) {
+        super(trigger, guard, NO_ACTION);
+    }
+}
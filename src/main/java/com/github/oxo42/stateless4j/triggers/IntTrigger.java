@@ -0,0 +1,28 @@
+package com.github.oxo42.stateless4j.triggers;
+
+/**
+ * A trigger carrying a single {@code int} argument, fired without boxing it
+ *
+ * @param <TTrigger> The type used to represent the triggers
+ */
+public class IntTrigger<TTrigger> extends TriggerWithParameters<TTrigger> {
+
+    /**
+     * Create a configured trigger
+     *
+     * @param underlyingTrigger Trigger represented by this trigger configuration
+     */
+    public IntTrigger(TTrigger underlyingTrigger) {
+        super(underlyingTrigger, int.class);
+    }
+
+    /**
+     * Ensure that the single argument is a {@code int}, held by a {@link PrimitiveArgument} or boxed
+     *
+     * @param args Args
+     */
+    @Override
+    public void validateParameters(Object[] args) {
+        PrimitiveArgument.validate(args, int.class, Integer.class);
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.oxo42.stateless4j.triggers;
+
+/**
+ * Mutable holder carrying the argument of a {@link LongTrigger}, {@link IntTrigger} or
+ * {@link DoubleTrigger} through a transition without boxing it.
+ * <p>
+ * A state machine reuses one holder for every primitive fire. The holder never reaches user code: actions
+ * receiving the raw arguments are given the boxed value instead, see {@link #boxed(Object[])}.
+ */
+public final class PrimitiveArgument {
+
+    private Class<?> type = long.class;
+    private long longValue;
+    private double doubleValue;
+
+    /**
+     * The type of the value held
+     *
+     * @return {@code long.class}, {@code int.class} or {@code double.class}
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    public long getLong() {
+        return longValue;
+    }
+
+    public void setLong(long value) {
+        this.type = long.class;
+        this.longValue = value;
+    }
+
+    public int getInt() {
+        return (int) longValue;
+    }
+
+    public void setInt(int value) {
+        this.type = int.class;
+        this.longValue = value;
+    }
+
+    public double getDouble() {
+        return doubleValue;
+    }
+
+    public void setDouble(double value) {
+        this.type = double.class;
+        this.doubleValue = value;
+    }
+
+    /**
+     * The value held, boxed
+     *
+     * @return A {@link Long}, {@link Integer} or {@link Double}
+     */
+    public Object box() {
+        if (type == double.class) {
+            return doubleValue;
+        }
+        if (type == int.class) {
+            return (int) longValue;
+        }
+        return longValue;
+    }
+
+    /**
+     * The arguments of a fire as seen by code outside of the machine, or kept beyond the fire
+     *
+     * @param args The arguments of a fire
+     * @return {@code args}, or a copy holding the boxed value if {@code args} holds a primitive holder
+     */
+    public static Object[] boxed(Object[] args) {
+        if (args.length == 1 && args[0] instanceof PrimitiveArgument) {
+            return new Object[]{((PrimitiveArgument) args[0]).box()};
+        }
+        return args;
+    }
+
+    /**
+     * The argument of a {@link LongTrigger}
+     *
+     * @param arg A holder, or a boxed value
+     * @return The value
+     */
+    public static long toLong(Object arg) {
+        return arg instanceof PrimitiveArgument ? ((PrimitiveArgument) arg).getLong() : (Long) arg;
+    }
+
+    /**
+     * The argument of an {@link IntTrigger}
+     *
+     * @param arg A holder, or a boxed value
+     * @return The value
+     */
+    public static int toInt(Object arg) {
+        return arg instanceof PrimitiveArgument ? ((PrimitiveArgument) arg).getInt() : (Integer) arg;
+    }
+
+    /**
+     * The argument of a {@link DoubleTrigger}
+     *
+     * @param arg A holder, or a boxed value
+     * @return The value
+     */
+    public static double toDouble(Object arg) {
+        return arg instanceof PrimitiveArgument ? ((PrimitiveArgument) arg).getDouble() : (Double) arg;
+    }
+
+    /**
+     * Ensure that the arguments are a single value of the given primitive type, held or boxed
+     */
+    static void validate(Object[] args, Class<?> type, Class<?> boxedType) {
+        if (args.length != 1) {
+            throw new IllegalStateException(
+                    String.format("A single argument of type %s is required but %s were supplied.", type, args.length));
+        }
+        Object arg = args[0];
+        Class<?> actual = arg instanceof PrimitiveArgument ? ((PrimitiveArgument) arg).type : arg == null ? null : arg.getClass();
+        if (actual != type && actual != boxedType) {
+            throw new IllegalStateException(
+                    String.format("The argument in position 0 is of type %s but must be of type %s.", actual, type));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(box());
+    }
+}
@@ -8,7 +8,9 @@ public abstract class TriggerBehaviour<S, T> {
 
     /**
      * Note that this guard gets called quite often, and sometimes multiple times per fire() call.
-     * Thus, it should not be anything performance intensive.
+     * Thus, it should not be anything performance intensive. See
+     * {@link com.github.oxo42.stateless4j.GuardEvaluationPolicy#FIRST_MATCH} to avoid evaluating
+     * the guards of every behaviour configured for the same trigger.
      */
     private final FuncBoolean guard;
 
@@ -21,6 +23,10 @@ public abstract class TriggerBehaviour<S, T> {
         return trigger;
     }
 
+    public FuncBoolean getGuard() {
+        return guard;
+    }
+
     public abstract void performAction(Object[] args);
 
     public boolean isInternal() {
@@ -1,12 +1,13 @@
 package com.github.oxo42.stateless4j.triggers;
 
-import com.github.oxo42.stateless4j.conversion.ParameterConversion;
+import com.github.oxo42.stateless4j.conversion.ParameterValidator;
 
 
 public abstract class TriggerWithParameters<TTrigger> {
 
     private final TTrigger underlyingTrigger;
     private final Class<?>[] argumentTypes;
+    private final ParameterValidator validator;
     
     /**
      * Create a configured trigger
@@ -19,6 +20,7 @@ public abstract class TriggerWithParameters<TTrigger> {
         
         this.underlyingTrigger = underlyingTrigger;
         this.argumentTypes = argumentTypes;
+        this.validator = ParameterValidator.compile(argumentTypes);
     }
     
     /**
@@ -36,8 +38,7 @@ public abstract class TriggerWithParameters<TTrigger> {
      * @param args Args
      */
     public void validateParameters(Object[] args) {
-        assert args != null : "args is null";
-        ParameterConversion.validate(args, argumentTypes);
+        validator.validate(args);
     }
     
     @Override
@@ -0,0 +1,129 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.transitions.Transition;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters1;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters2;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArgumentFrameTests {
+
+    private final List<Object[]> frames = new ArrayList<>();
+    private final List<String> received = new ArrayList<>();
+
+    @Test
+    public void FramesAreReusedAndClearedBetweenFires() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        final TriggerWithParameters2<String, Integer, Trigger> x = config.setTriggerParameters(Trigger.X, String.class, Integer.class);
+        config.configure(State.A)
+                .permitReentry(Trigger.X)
+                .onEntry(new Action2<Transition<State, Trigger>, Object[]>() {
+                    @Override
+                    public void doIt(Transition<State, Trigger> transition, Object[] args) {
+                        frames.add(args);
+                        received.add(args[0] + ":" + args[1]);
+                    }
+                });
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setReuseArgumentFrames(true);
+        sm.fire(x, "a", 1);
+        sm.fire(x, "b", 2);
+        sm.tryFire(x, "c", 3);
+
+        assertEquals("a:1", received.get(0));
+        assertEquals("b:2", received.get(1));
+        assertEquals("c:3", received.get(2));
+        assertSame(frames.get(1), frames.get(2));
+        assertNull(frames.get(2)[0]);
+    }
+
+    @Test
+    public void FramesAreNotReusedByDefault() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        TriggerWithParameters1<String, Trigger> x = config.setTriggerParameters(Trigger.X, String.class);
+        config.configure(State.A)
+                .permitReentry(Trigger.X)
+                .onEntry(new Action2<Transition<State, Trigger>, Object[]>() {
+                    @Override
+                    public void doIt(Transition<State, Trigger> transition, Object[] args) {
+                        frames.add(args);
+                    }
+                });
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fire(x, "a");
+        sm.fire(x, "b");
+
+        assertNotSame(frames.get(0), frames.get(1));
+        assertEquals("a", frames.get(0)[0]);
+    }
+
+    @Test
+    public void NestedFireOfTheSameArityGetsItsOwnFrame() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        final TriggerWithParameters1<String, Trigger> x = config.setTriggerParameters(Trigger.X, String.class);
+        final TriggerWithParameters1<String, Trigger> y = config.setTriggerParameters(Trigger.Y, String.class);
+        final StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, new Action1<String>() {
+                    @Override
+                    public void doIt(String arg) {
+                        sm.fire(y, "inner");
+                        received.add(arg);
+                    }
+                })
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .onEntryFrom(y, new Action1<String>() {
+                    @Override
+                    public void doIt(String arg) {
+                        received.add(arg);
+                    }
+                });
+
+        sm.setReuseArgumentFrames(true);
+        sm.fire(x, "outer");
+
+        assertEquals("inner", received.get(0));
+        assertEquals("outer", received.get(1));
+    }
+
+    @Test
+    public void DeferredTriggersKeepTheirArguments() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        TriggerWithParameters1<String, Trigger> x = config.setTriggerParameters(Trigger.X, String.class);
+        config.configure(State.A)
+                .defer(Trigger.X)
+                .permit(Trigger.Y, State.B);
+        config.configure(State.B)
+                .permit(Trigger.X, State.C);
+        config.configure(State.C)
+                .onEntryFrom(x, new Action1<String>() {
+                    @Override
+                    public void doIt(String arg) {
+                        received.add(arg);
+                    }
+                })
+                .permitReentry(Trigger.X);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setReuseArgumentFrames(true);
+        sm.fire(x, "first");
+        sm.tryFire(x, "second");
+        sm.fire(Trigger.Y);
+
+        assertEquals(State.C, sm.getState());
+        assertEquals(2, received.size());
+        assertEquals("first", received.get(0));
+        assertEquals("second", received.get(1));
+    }
+}
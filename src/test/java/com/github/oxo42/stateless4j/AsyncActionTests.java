@@ -0,0 +1,238 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.Func;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class AsyncActionTests {
+
+    private final List<String> log = new ArrayList<>();
+
+    private final Executor direct = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private Func<CompletionStage<?>> start(final String name, final CompletableFuture<Void> completion) {
+        return new Func<CompletionStage<?>>() {
+            @Override
+            public CompletionStage<?> call() {
+                log.add("start " + name);
+                return completion;
+            }
+        };
+    }
+
+    private Action record(final String entry) {
+        return new Action() {
+            @Override
+            public void doIt() {
+                log.add(entry);
+            }
+        };
+    }
+
+    @Test
+    public void EachActionWaitsForThePreviousOne() throws Exception {
+        CompletableFuture<Void> exit = new CompletableFuture<>();
+        CompletableFuture<Void> transition = new CompletableFuture<>();
+        CompletableFuture<Void> entry = new CompletableFuture<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .onExitAsync(start("exit", exit))
+                .permitAsync(Trigger.X, State.B, start("transition", transition));
+        config.configure(State.B)
+                .onEntryAsync(start("entry", entry))
+                .onEntry(record("entered"));
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setAsyncExecutor(direct);
+        CompletableFuture<FireResult> result = sm.fireAsync(Trigger.X);
+
+        assertEquals(1, log.size());
+        exit.complete(null);
+        assertEquals(2, log.size());
+        assertEquals(State.A, sm.getState());
+        transition.complete(null);
+        assertEquals(State.B, sm.getState());
+        assertEquals("start entry", log.get(2));
+        assertFalse(result.isDone());
+        entry.complete(null);
+
+        assertEquals(FireResult.HANDLED, result.get());
+        assertEquals("entered", log.get(3));
+    }
+
+    @Test
+    public void FiresAreAppliedInRequestOrder() throws Exception {
+        CompletableFuture<Void> entry = new CompletableFuture<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryAsync(start("B", entry))
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .onEntry(record("entered C"));
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setAsyncExecutor(direct);
+        CompletableFuture<FireResult> first = sm.fireAsync(Trigger.X);
+        CompletableFuture<FireResult> second = sm.fireAsync(Trigger.Y);
+
+        assertFalse(second.isDone());
+        assertEquals(1, log.size());
+        entry.complete(null);
+
+        assertEquals(FireResult.HANDLED, first.get());
+        assertEquals(FireResult.HANDLED, second.get());
+        assertEquals(State.C, sm.getState());
+        assertEquals("entered C", log.get(1));
+    }
+
+    @Test
+    public void FailedActionCompletesExceptionallyAndLaterFiresRun() throws Exception {
+        CompletableFuture<Void> entry = new CompletableFuture<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryAsync(start("B", entry))
+                .permit(Trigger.Y, State.C);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setAsyncExecutor(direct);
+        CompletableFuture<FireResult> first = sm.fireAsync(Trigger.X);
+        CompletableFuture<FireResult> second = sm.fireAsync(Trigger.Y);
+        entry.completeExceptionally(new IllegalArgumentException("failed"));
+
+        try {
+            first.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals(FireResult.HANDLED, second.get());
+        assertEquals(State.C, sm.getState());
+    }
+
+    @Test
+    public void UnhandledTriggerCompletesExceptionally() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setAsyncExecutor(direct);
+        CompletableFuture<FireResult> result = sm.fireAsync(Trigger.Z);
+
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    @Test
+    public void SynchronousFireWaitsForAsyncActions() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAsync(Trigger.X, State.B, start("transition", CompletableFuture.<Void>completedFuture(null)));
+        config.configure(State.B)
+                .onEntryAsync(new Func<CompletionStage<?>>() {
+                    @Override
+                    public CompletionStage<?> call() {
+                        return CompletableFuture.runAsync(new Runnable() {
+                            @Override
+                            public void run() {
+                                log.add("entry done");
+                            }
+                        });
+                    }
+                });
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fire(Trigger.X);
+
+        assertEquals(State.B, sm.getState());
+        assertEquals("start transition", log.get(0));
+        assertEquals("entry done", log.get(1));
+    }
+
+    @Test
+    public void ReleasedDeferredTriggerRunsItsAsyncActionsBeforeTheFireCompletes() throws Exception {
+        CompletableFuture<Void> transition = new CompletableFuture<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .defer(Trigger.Y)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .permitAsync(Trigger.Y, State.C, start("transition", transition));
+        config.configure(State.C)
+                .onEntry(record("entered C"));
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setAsyncExecutor(direct);
+        assertEquals(FireResult.DEFERRED, sm.fireAsync(Trigger.Y).get());
+        CompletableFuture<FireResult> result = sm.fireAsync(Trigger.X);
+
+        assertEquals(State.B, sm.getState());
+        assertEquals("start transition", log.get(0));
+        assertFalse(result.isDone());
+        transition.complete(null);
+
+        assertEquals(FireResult.HANDLED, result.get());
+        assertEquals(State.C, sm.getState());
+        assertEquals("entered C", log.get(1));
+    }
+
+    @Test
+    public void FailedReplayCompletesTheReleasingFireExceptionally() throws Exception {
+        CompletableFuture<Void> transition = new CompletableFuture<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .defer(Trigger.Y)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .permitAsync(Trigger.Y, State.C, start("transition", transition))
+                .permit(Trigger.Z, State.A);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setAsyncExecutor(direct);
+        sm.fireAsync(Trigger.Y);
+        CompletableFuture<FireResult> released = sm.fireAsync(Trigger.X);
+        transition.completeExceptionally(new IllegalArgumentException("failed"));
+
+        try {
+            released.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        // the failed trigger is not replayed again
+        assertEquals(FireResult.HANDLED, sm.fireAsync(Trigger.Z).get());
+        assertEquals(FireResult.HANDLED, sm.fireAsync(Trigger.X).get());
+        assertEquals(State.B, sm.getState());
+        assertEquals(1, log.size());
+    }
+
+    @Test
+    public void FrozenConfigRunsAsyncActions() throws Exception {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryAsync(start("B", CompletableFuture.<Void>completedFuture(null)));
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config.freeze());
+        assertEquals(FireResult.HANDLED, sm.fireAsync(Trigger.X).get());
+        assertEquals("start B", log.get(0));
+    }
+}
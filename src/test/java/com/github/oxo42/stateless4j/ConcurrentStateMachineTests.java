@@ -0,0 +1,364 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.delegates.Action3;
+import com.github.oxo42.stateless4j.delegates.Trace;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters1;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters2;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentStateMachineTests {
+
+    private final List<String> log = new ArrayList<>();
+
+    private Action record(final String entry) {
+        return new Action() {
+            @Override
+            public void doIt() {
+                log.add(entry);
+            }
+        };
+    }
+
+    @Test
+    public void FiresLikeStateMachine() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .onExit(record("exit A"))
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .substateOf(State.C)
+                .onEntry(record("enter B"))
+                .ignore(Trigger.X);
+        config.configure(State.C)
+                .onEntry(record("enter C"))
+                .permit(Trigger.Y, State.A);
+
+        ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+        assertTrue(config.isFrozen());
+        sm.fire(Trigger.X);
+
+        assertEquals(State.B, sm.getState());
+        assertTrue(sm.isInState(State.C));
+        assertTrue(sm.canFire(Trigger.Y));
+        assertEquals(3, log.size());
+        assertEquals("exit A", log.get(0));
+        assertEquals("enter C", log.get(1));
+        assertEquals("enter B", log.get(2));
+        assertEquals(FireResult.IGNORED, sm.tryFire(Trigger.X));
+        assertEquals(FireResult.UNHANDLED, sm.tryFire(Trigger.Z));
+    }
+
+    @Test
+    public void PassesTriggerParametersToEntryActions() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        TriggerWithParameters1<String, Trigger> x = config.setTriggerParameters(Trigger.X, String.class);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, new Action1<String>() {
+                    @Override
+                    public void doIt(String arg) {
+                        log.add(arg);
+                    }
+                });
+
+        ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+        sm.fire(x, "arg");
+
+        assertEquals(1, log.size());
+        assertEquals("arg", log.get(0));
+    }
+
+    @Test
+    public void UnhandledTriggerActionIsCalled() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.B, config);
+        sm.onUnhandledTrigger(new Action2<State, Trigger>() {
+            @Override
+            public void doIt(State state, Trigger trigger) {
+                log.add(state + " " + trigger);
+            }
+        });
+        sm.fire(Trigger.X);
+
+        assertEquals(1, log.size());
+        assertEquals("B X", log.get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void UnhandledTriggerThrowsByDefault() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        new ConcurrentStateMachine<>(State.A, config).fire(Trigger.Y);
+    }
+
+    @Test
+    public void EveryCommittedTransitionRunsItsActionsOnce() throws InterruptedException {
+        final AtomicInteger entries = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        Action countEntry = new Action() {
+            @Override
+            public void doIt() {
+                entries.incrementAndGet();
+            }
+        };
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .onEntry(countEntry)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(countEntry)
+                .permit(Trigger.Y, State.A);
+
+        final ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+        final int threads = 4;
+        final int fires = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Trigger trigger = t % 2 == 0 ? Trigger.X : Trigger.Y;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < fires; i++) {
+                        if (sm.tryFire(trigger) != FireResult.HANDLED) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        int committed = threads * fires - rejected.get();
+        assertEquals(committed, entries.get());
+        assertEquals(committed % 2 == 0 ? State.A : State.B, sm.getState());
+    }
+
+    @Test
+    public void ActionsRunInTheOrderTransitionsWereCommitted() throws InterruptedException {
+        final Queue<State> entered = new ConcurrentLinkedQueue<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        entered.add(State.A);
+                    }
+                })
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        entered.add(State.B);
+                    }
+                })
+                .permit(Trigger.Y, State.A);
+
+        final ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Trigger trigger = t % 2 == 0 ? Trigger.X : Trigger.Y;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 5000; i++) {
+                        sm.tryFire(trigger);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        State expected = State.B;
+        for (State state : entered) {
+            assertEquals(expected, state);
+            expected = expected == State.B ? State.A : State.B;
+        }
+        assertEquals(expected == State.B ? State.A : State.B, sm.getState());
+    }
+
+    @Test
+    public void FireFromAnActionRunsAfterTheCurrentTransition() {
+        final AtomicReference<ConcurrentStateMachine<State, Trigger>> machine = new AtomicReference<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        machine.get().fire(Trigger.Y);
+                        log.add("enter B");
+                    }
+                })
+                .onExit(record("exit B"))
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .onEntry(record("enter C"));
+
+        ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+        machine.set(sm);
+        sm.fire(Trigger.X);
+
+        assertEquals(State.C, sm.getState());
+        assertEquals(3, log.size());
+        assertEquals("enter B", log.get(0));
+        assertEquals("exit B", log.get(1));
+        assertEquals("enter C", log.get(2));
+    }
+
+    @Test
+    public void ActionThrowingStillRunsTheTransitionsCommittedAfterIt() {
+        final AtomicReference<ConcurrentStateMachine<State, Trigger>> machine = new AtomicReference<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        machine.get().fire(Trigger.Y);
+                        throw new IllegalStateException("enter B");
+                    }
+                })
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .onEntry(record("enter C"));
+
+        ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+        machine.set(sm);
+        try {
+            sm.fire(Trigger.X);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("enter B", e.getMessage());
+        }
+
+        assertEquals(State.C, sm.getState());
+        assertEquals(1, log.size());
+        assertEquals("enter C", log.get(0));
+    }
+
+    @Test
+    public void TriggerWithInvalidParametersIsNotTraced() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.setTriggerParameters(Trigger.X, String.class);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+        sm.setTrace(new Trace<State, Trigger>() {
+            @Override
+            public void trigger(Trigger trigger) {
+                log.add("trigger " + trigger);
+            }
+
+            @Override
+            public void transition(Trigger trigger, State source, State destination) {
+            }
+        });
+        try {
+            sm.tryFire(Trigger.X);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals(State.A, sm.getState());
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void TryFirePassesTriggerParameters() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        TriggerWithParameters2<String, Integer, Trigger> x = config.setTriggerParameters(Trigger.X, String.class, Integer.class);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, new Action2<String, Integer>() {
+                    @Override
+                    public void doIt(String arg0, Integer arg1) {
+                        log.add(arg0 + arg1);
+                    }
+                });
+
+        ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+
+        assertEquals(FireResult.HANDLED, sm.tryFire(x, "arg", 1));
+        assertEquals(FireResult.UNHANDLED, sm.tryFire(x, "arg", 2));
+        assertEquals(1, log.size());
+        assertEquals("arg1", log.get(0));
+    }
+
+    @Test
+    public void UnhandledTriggerActionReceivesTheArguments() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        TriggerWithParameters1<String, Trigger> y = config.setTriggerParameters(Trigger.Y, String.class);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+        sm.onUnhandledTrigger(new Action3<State, Trigger, Object[]>() {
+            @Override
+            public void doIt(State state, Trigger trigger, Object[] args) {
+                log.add(state + " " + trigger + " " + args[0]);
+            }
+        });
+        sm.fire(y, "arg");
+
+        assertEquals(1, log.size());
+        assertEquals("A Y arg", log.get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void InitialTransitionFiresOnlyOnce() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .onEntry(record("enter A"));
+
+        ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+        sm.fireInitialTransition();
+        assertEquals(1, log.size());
+        sm.fireInitialTransition();
+    }
+}
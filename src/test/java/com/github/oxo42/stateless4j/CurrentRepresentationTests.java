@@ -0,0 +1,74 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Func;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CurrentRepresentationTests {
+
+    private State externalState = State.A;
+
+    @Test
+    public void RepresentationIsReusedWhileStateIsUnchanged() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A).permit(Trigger.X, State.B);
+        config.configure(State.B).permit(Trigger.X, State.A);
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+
+        assertSame(config.getRepresentation(State.A), sm.getCurrentRepresentation());
+        sm.fire(Trigger.X);
+        assertSame(config.getRepresentation(State.B), sm.getCurrentRepresentation());
+    }
+
+    @Test
+    public void UnconfiguredStateRepresentationIsReused() {
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.C, new StateMachineConfig<State, Trigger>());
+
+        StateRepresentation<State, Trigger> representation = sm.getCurrentRepresentation();
+        assertEquals(State.C, representation.getUnderlyingState());
+        assertSame(representation, sm.getCurrentRepresentation());
+    }
+
+    @Test
+    public void StateConfiguredLaterIsPickedUp() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        assertFalse(sm.canFire(Trigger.X));
+
+        config.configure(State.A).permit(Trigger.X, State.B);
+
+        assertTrue(sm.canFire(Trigger.X));
+        assertSame(config.getRepresentation(State.A), sm.getCurrentRepresentation());
+    }
+
+    @Test
+    public void ExternalStateChangesAreObserved() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A).permit(Trigger.X, State.B);
+        config.configure(State.C).permit(Trigger.Y, State.A);
+        config.freeze();
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(
+                new Func<State>() {
+                    @Override
+                    public State call() {
+                        return externalState;
+                    }
+                },
+                new Action1<State>() {
+                    @Override
+                    public void doIt(State state) {
+                        externalState = state;
+                    }
+                },
+                config);
+
+        assertTrue(sm.canFire(Trigger.X));
+        externalState = State.C;
+        assertFalse(sm.canFire(Trigger.X));
+        sm.fire(Trigger.Y);
+        assertEquals(State.A, externalState);
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
+import com.github.oxo42.stateless4j.delegates.Trace;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters1;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DeferredTriggerTests {
+
+    private final List<String> log = new ArrayList<>();
+
+    private Action1<String> record() {
+        return new Action1<String>() {
+            @Override
+            public void doIt(String arg) {
+                log.add(arg);
+            }
+        };
+    }
+
+    @Test
+    public void DeferredTriggerIsReplayedWithItsArgumentsAfterLeavingTheState() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        TriggerWithParameters1<String, Trigger> x = config.setTriggerParameters(Trigger.X, String.class);
+        config.configure(State.A)
+                .defer(Trigger.X)
+                .permit(Trigger.Y, State.B);
+        config.configure(State.B)
+                .permit(Trigger.X, State.C);
+        config.configure(State.C)
+                .onEntryFrom(x, record());
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        assertEquals(FireResult.DEFERRED, sm.tryFire(x, "first"));
+        assertEquals(State.A, sm.getState());
+        sm.fire(Trigger.Y);
+
+        assertEquals(State.C, sm.getState());
+        assertEquals(1, log.size());
+        assertEquals("first", log.get(0));
+    }
+
+    @Test
+    public void TriggersStayDeferredUntilAStateAcceptsThem() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .defer(Trigger.X)
+                .permit(Trigger.Y, State.B);
+        config.configure(State.B)
+                .defer(Trigger.X)
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .permit(Trigger.X, State.A);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fire(Trigger.X);
+        sm.fire(Trigger.Y);
+        assertEquals(State.B, sm.getState());
+        sm.fire(Trigger.Y);
+
+        assertEquals(State.A, sm.getState());
+    }
+
+    @Test
+    public void ReplayRestartsFromTheOldestTriggerAfterATransition() {
+        final List<Trigger> fired = new ArrayList<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .defer(Trigger.X)
+                .defer(Trigger.Y)
+                .permit(Trigger.Z, State.B);
+        config.configure(State.B)
+                .defer(Trigger.X)
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .permit(Trigger.X, State.A);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setTrace(new Trace<State, Trigger>() {
+            @Override
+            public void trigger(Trigger trigger) {
+            }
+
+            @Override
+            public void transition(Trigger trigger, State source, State destination) {
+                fired.add(trigger);
+            }
+        });
+        sm.fire(Trigger.X);
+        sm.fire(Trigger.Y);
+        sm.fire(Trigger.Z);
+
+        assertEquals(State.A, sm.getState());
+        assertEquals(3, fired.size());
+        assertEquals(Trigger.Z, fired.get(0));
+        assertEquals(Trigger.Y, fired.get(1));
+        assertEquals(Trigger.X, fired.get(2));
+    }
+
+    @Test
+    public void ReplayedTriggerThatIsNotHandledIsDropped() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .defer(Trigger.X)
+                .defer(Trigger.Z)
+                .permit(Trigger.Y, State.B);
+        config.configure(State.B)
+                .permit(Trigger.Z, State.C);
+        config.configure(State.C)
+                .permit(Trigger.X, State.A);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fire(Trigger.X);
+        sm.fire(Trigger.Z);
+        sm.fire(Trigger.Y);
+
+        assertEquals(State.C, sm.getState());
+    }
+
+    @Test
+    public void ReplayedTriggerThatIsNotHandledIsNotReported() {
+        final List<Trigger> unhandled = new ArrayList<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .defer(Trigger.X)
+                .permit(Trigger.Y, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.onUnhandledTrigger(new Action2<State, Trigger>() {
+            @Override
+            public void doIt(State state, Trigger trigger) {
+                unhandled.add(trigger);
+            }
+        });
+        sm.fire(Trigger.X);
+        assertEquals(FireResult.HANDLED, sm.tryFire(Trigger.Y));
+
+        assertTrue(unhandled.isEmpty());
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void FleetRejectsDeferredTriggers() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .defer(Trigger.X);
+
+        new StateMachineFleet<>(2, State.A, config);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void ConcurrentStateMachineRejectsDeferredTriggers() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.B)
+                .deferIf(Trigger.X, new FuncBoolean() {
+                    @Override
+                    public boolean call() {
+                        return false;
+                    }
+                });
+
+        new ConcurrentStateMachine<>(State.A, config);
+    }
+
+    @Test
+    public void DeferredTriggersAreReplayedInQueuedMode() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .defer(Trigger.X)
+                .permit(Trigger.Y, State.B);
+        config.configure(State.B)
+                .permit(Trigger.X, State.C);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config.freeze());
+        sm.setFiringMode(FiringMode.QUEUED);
+        sm.fire(Trigger.X);
+        sm.fire(Trigger.Y);
+
+        assertEquals(State.C, sm.getState());
+    }
+
+    @Test
+    public void DeferIfOnlyDefersWhenTheGuardHolds() {
+        final boolean[] busy = {false};
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .deferIf(Trigger.X, new FuncBoolean() {
+                    @Override
+                    public boolean call() {
+                        return busy[0];
+                    }
+                })
+                .permitIf(Trigger.X, State.B, new FuncBoolean() {
+                    @Override
+                    public boolean call() {
+                        return !busy[0];
+                    }
+                });
+        config.configure(State.B)
+                .permit(Trigger.X, State.C);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        busy[0] = true;
+        assertEquals(FireResult.DEFERRED, sm.tryFire(Trigger.X));
+        busy[0] = false;
+        assertEquals(FireResult.HANDLED, sm.tryFire(Trigger.X));
+        assertEquals(State.C, sm.getState());
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.oxo42.stateless4j;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DirectStateStoreTests {
+
+    @Test
+    public void WidthFollowsLargestCode() {
+        assertEquals(1, new DirectStateStore(4, 0).getWidth());
+        assertEquals(1, new DirectStateStore(4, 255).getWidth());
+        assertEquals(2, new DirectStateStore(4, 256).getWidth());
+        assertEquals(2, new DirectStateStore(4, 65535).getWidth());
+        assertEquals(4, new DirectStateStore(4, 65536).getWidth());
+        assertEquals(4, new DirectStateStore(4, 70000).getWidth());
+    }
+
+    @Test
+    public void CodesJustAboveASlotWidthRoundTrip() {
+        int[] maxCodes = {256, 65536};
+        for (int maxCode : maxCodes) {
+            DirectStateStore store = new DirectStateStore(2, maxCode);
+            store.set(1, maxCode);
+
+            assertEquals(maxCode, store.get(1));
+            assertEquals(0, store.get(0));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void CodeWiderThanTwoByteSlotIsRejected() {
+        new DirectStateStore(1, 65535).set(0, 65536);
+    }
+
+    @Test
+    public void FleetWithAsManyStatesAsOneByteCodesFitsOneByteSlots() {
+        assertLastStateReachable(256, 1);
+        assertLastStateReachable(257, 2);
+    }
+
+    @Test
+    public void FleetWithAsManyStatesAsTwoByteCodesFitsTwoByteSlots() {
+        assertLastStateReachable(65536, 2);
+        assertLastStateReachable(65537, 4);
+    }
+
+    private static void assertLastStateReachable(int stateCount, int width) {
+        StateMachineConfig<Integer, String> config = new StateMachineConfig<>();
+        for (int state = 0; state < stateCount - 1; state++) {
+            config.configure(state)
+                    .permit("last", stateCount - 1);
+        }
+        config.configure(stateCount - 1);
+        DirectStateStore store = new DirectStateStore(2, stateCount - 1);
+        StateMachineFleet<Integer, String> fleet = new StateMachineFleet<>(store, 0, config);
+        fleet.fire(1, "last");
+
+        assertEquals(width, store.getWidth());
+        assertEquals(stateCount - 1, (int) fleet.getState(1));
+        assertEquals(0, (int) fleet.getState(0));
+    }
+
+    @Test
+    public void CodesRoundTripAtEveryWidth() {
+        int[] maxCodes = {255, 65535, Integer.MAX_VALUE};
+        for (int maxCode : maxCodes) {
+            DirectStateStore store = new DirectStateStore(3, maxCode);
+            store.set(0, maxCode);
+            store.set(2, 7);
+
+            assertEquals(3, store.size());
+            assertEquals(maxCode, store.get(0));
+            assertEquals(0, store.get(1));
+            assertEquals(7, store.get(2));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void CodeWiderThanSlotIsRejected() {
+        new DirectStateStore(1, 10).set(0, 256);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void SlotOutOfRangeIsRejected() {
+        new DirectStateStore(2, 10).get(2);
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters1;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EnumStateMachineConfigTests {
+
+    private String entryArg;
+    private boolean unhandled;
+
+    @Test
+    public void BehavesLikePlainConfigBeforeFreeze() {
+        EnumStateMachineConfig<State, Trigger> config = new EnumStateMachineConfig<>(State.class, Trigger.class);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fire(Trigger.X);
+
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test
+    public void FrozenConfigDispatchesThroughSuperstates() {
+        EnumStateMachineConfig<State, Trigger> config = new EnumStateMachineConfig<>(State.class, Trigger.class);
+        config.configure(State.A)
+                .substateOf(State.C)
+                .permit(Trigger.X, State.B);
+        config.configure(State.C)
+                .permit(Trigger.Y, State.B);
+        config.configure(State.B)
+                .permit(Trigger.Z, State.A);
+        config.freeze();
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        assertTrue(sm.canFire(Trigger.X));
+        assertTrue(sm.canFire(Trigger.Y));
+        assertFalse(sm.canFire(Trigger.Z));
+        assertTrue(sm.isInState(State.C));
+
+        sm.fire(Trigger.Y);
+        assertEquals(State.B, sm.getState());
+        sm.fire(Trigger.Z);
+        assertEquals(State.A, sm.getState());
+    }
+
+    @Test
+    public void RepresentationsAreLookedUpByOrdinal() {
+        EnumStateMachineConfig<State, Trigger> config = new EnumStateMachineConfig<>(State.class, Trigger.class);
+        config.configure(State.B);
+        StateRepresentation<State, Trigger> representation = config.getRepresentation(State.B);
+        config.freeze();
+
+        assertSame(representation, config.getRepresentation(State.B));
+        assertNull(config.getRepresentation(State.A));
+    }
+
+    @Test
+    public void UnconfiguredStateReportsUnhandledTrigger() {
+        EnumStateMachineConfig<State, Trigger> config = new EnumStateMachineConfig<>(State.class, Trigger.class);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.freeze();
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.B, config);
+        sm.onUnhandledTrigger(new Action2<State, Trigger>() {
+            @Override
+            public void doIt(State state, Trigger trigger) {
+                unhandled = true;
+            }
+        });
+        sm.fire(Trigger.X);
+
+        assertTrue(unhandled);
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test
+    public void ParameterisedTriggersAreValidated() {
+        EnumStateMachineConfig<State, Trigger> config = new EnumStateMachineConfig<>(State.class, Trigger.class);
+        TriggerWithParameters1<String, Trigger> x = config.setTriggerParameters(Trigger.X, String.class);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, new Action1<String>() {
+                    @Override
+                    public void doIt(String arg) {
+                        entryArg = arg;
+                    }
+                });
+        config.freeze();
+
+        assertSame(x, config.getTriggerConfiguration(Trigger.X));
+        assertNull(config.getTriggerConfiguration(Trigger.Y));
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fire(x, "arg");
+
+        assertEquals("arg", entryArg);
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.Action2;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FiringModeTests {
+
+    private final List<String> log = new ArrayList<>();
+    private StateMachine<State, Trigger> sm;
+
+    private Action record(final String entry) {
+        return new Action() {
+            @Override
+            public void doIt() {
+                log.add(entry);
+            }
+        };
+    }
+
+    private Action fire(final Trigger trigger) {
+        return new Action() {
+            @Override
+            public void doIt() {
+                log.add("fire " + trigger + " -> " + sm.tryFire(trigger));
+            }
+        };
+    }
+
+    private StateMachineConfig<State, Trigger> chain() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(fire(Trigger.Y))
+                .onEntry(record("entered B"))
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .onEntry(record("entered C"));
+        return config;
+    }
+
+    @Test
+    public void DefaultModeFiresImmediately() {
+        sm = new StateMachine<>(State.A, chain());
+        assertEquals(FiringMode.IMMEDIATE, sm.getFiringMode());
+        sm.fire(Trigger.X);
+
+        assertEquals(State.C, sm.getState());
+        assertEquals("entered C", log.get(0));
+        assertEquals("fire Y -> HANDLED", log.get(1));
+        assertEquals("entered B", log.get(2));
+    }
+
+    @Test
+    public void QueuedModeFiresAfterTransitionCompletes() {
+        sm = new StateMachine<>(State.A, chain());
+        sm.setFiringMode(FiringMode.QUEUED);
+        sm.fire(Trigger.X);
+
+        assertEquals(State.C, sm.getState());
+        assertEquals("fire Y -> QUEUED", log.get(0));
+        assertEquals("entered B", log.get(1));
+        assertEquals("entered C", log.get(2));
+    }
+
+    @Test
+    public void QueuedTriggersFireInOrder() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(fire(Trigger.Y))
+                .onEntry(fire(Trigger.Z))
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .onEntry(record("entered C"))
+                .permit(Trigger.Z, State.A);
+        config.configure(State.A)
+                .onEntry(record("entered A"));
+
+        sm = new StateMachine<>(State.A, config);
+        sm.setFiringMode(FiringMode.QUEUED);
+        sm.fire(Trigger.X);
+
+        assertEquals(State.A, sm.getState());
+        assertEquals("entered C", log.get(2));
+        assertEquals("entered A", log.get(3));
+    }
+
+    @Test
+    public void LongChainsDoNotGrowTheStack() {
+        final int[] remaining = {100000};
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitReentry(Trigger.X)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        if (remaining[0]-- > 0) {
+                            sm.fire(Trigger.X);
+                        }
+                    }
+                });
+
+        sm = new StateMachine<>(State.A, config);
+        sm.setFiringMode(FiringMode.QUEUED);
+        sm.fire(Trigger.X);
+
+        assertEquals(-1, remaining[0]);
+    }
+
+    @Test
+    public void UnhandledQueuedTriggerIsReported() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(fire(Trigger.Z));
+
+        sm = new StateMachine<>(State.A, config);
+        sm.setFiringMode(FiringMode.QUEUED);
+        sm.onUnhandledTrigger(new Action2<State, Trigger>() {
+            @Override
+            public void doIt(State state, Trigger trigger) {
+                log.add("unhandled " + trigger + " in " + state);
+            }
+        });
+        sm.fire(Trigger.X);
+
+        assertEquals("unhandled Z in B", log.get(1));
+    }
+
+    @Test
+    public void QueueIsDiscardedWhenFireThrows() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(fire(Trigger.Z))
+                .onEntry(fire(Trigger.Y))
+                .permit(Trigger.Y, State.C);
+
+        sm = new StateMachine<>(State.A, config);
+        sm.setFiringMode(FiringMode.QUEUED);
+        try {
+            sm.fire(Trigger.X);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(State.B, sm.getState());
+        }
+
+        sm.setFiringMode(FiringMode.IMMEDIATE);
+        sm.fire(Trigger.Y);
+        assertEquals(State.C, sm.getState());
+    }
+
+    @Test
+    public void InitialTransitionDrainsQueue() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .onEntry(fire(Trigger.X))
+                .onEntry(record("entered A"))
+                .permit(Trigger.X, State.B);
+
+        sm = new StateMachine<>(State.A, config);
+        sm.setFiringMode(FiringMode.QUEUED);
+        sm.fireInitialTransition();
+
+        assertEquals(State.B, sm.getState());
+        assertEquals("fire X -> QUEUED", log.get(0));
+        assertEquals("entered A", log.get(1));
+    }
+}
@@ -0,0 +1,249 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.delegates.Action3;
+import com.github.oxo42.stateless4j.delegates.FuncLong;
+import com.github.oxo42.stateless4j.transitions.FlightRecord;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class FlightRecorderTests {
+
+    private long time = 5_000_000_000L;
+
+    private final FlightRecorder<State, Trigger> recorder = new FlightRecorder<>(8, new FuncLong() {
+        @Override
+        public long call() {
+            time += 1_000;
+            return time;
+        }
+    });
+
+    @Test
+    public void EveryFireIsRecordedWithItsOutcome() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B)
+                .ignore(Trigger.Y);
+        config.configure(State.B)
+                .permitInternal(Trigger.Y, new Action() {
+                    @Override
+                    public void doIt() {
+                    }
+                });
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setFlightRecorder(recorder);
+        sm.fire(Trigger.Y);
+        sm.fire(Trigger.X);
+        sm.fire(Trigger.Y);
+        sm.tryFire(Trigger.Z);
+
+        List<FlightRecord<State, Trigger>> records = recorder.snapshot();
+        assertEquals(4, records.size());
+        assertRecord(records.get(0), 0, Trigger.Y, State.A, State.A, FireResult.IGNORED);
+        assertRecord(records.get(1), 1, Trigger.X, State.A, State.B, FireResult.HANDLED);
+        assertRecord(records.get(2), 2, Trigger.Y, State.B, State.B, FireResult.HANDLED);
+        assertRecord(records.get(3), 3, Trigger.Z, State.B, State.B, FireResult.UNHANDLED);
+        assertEquals(5_000, records.get(0).getTimestamp());
+        assertEquals(1_000, records.get(0).getDuration());
+        assertEquals(-1, records.get(0).getInstance());
+    }
+
+    @Test
+    public void OnlyTheMostRecentFiresAreKept() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .permit(Trigger.X, State.A);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setFlightRecorder(recorder);
+        for (int i = 0; i < 21; i++) {
+            sm.fire(Trigger.X);
+        }
+
+        List<FlightRecord<State, Trigger>> records = recorder.snapshot();
+        assertEquals(21, recorder.getRecordedCount());
+        assertEquals(8, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(13 + i, records.get(i).getSequence());
+        }
+        assertEquals(State.A, records.get(7).getSource());
+    }
+
+    @Test
+    public void FireThatThrowsIsRecordedAsFailed() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        throw new IllegalStateException("boom");
+                    }
+                });
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setFlightRecorder(recorder);
+        try {
+            sm.fire(Trigger.X);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+
+        FlightRecord<State, Trigger> record = recorder.snapshot().get(0);
+        assertTrue(record.isFailed());
+        assertNull(record.getOutcome());
+        assertEquals(State.B, record.getDestination());
+    }
+
+    @Test
+    public void NestedFireIsRecordedBeforeTheFireRunningIt() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        final StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        sm.fire(Trigger.Y);
+                    }
+                })
+                .permit(Trigger.Y, State.C);
+
+        sm.setFlightRecorder(recorder);
+        sm.fire(Trigger.X);
+
+        List<FlightRecord<State, Trigger>> records = recorder.snapshot();
+        assertRecord(records.get(0), 0, Trigger.Y, State.B, State.C, FireResult.HANDLED);
+        assertRecord(records.get(1), 1, Trigger.X, State.A, State.B, FireResult.HANDLED);
+        assertTrue(records.get(0).getTimestamp() >= records.get(1).getTimestamp());
+        assertTrue(records.get(1).getDuration() > records.get(0).getDuration());
+    }
+
+    @Test
+    public void FleetRecordsTheInstanceFired() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        StateMachineFleet<State, Trigger> fleet = new StateMachineFleet<>(4, State.A, config);
+        fleet.setFlightRecorder(recorder);
+        fleet.onUnhandledTrigger(new Action3<Integer, State, Trigger>() {
+            @Override
+            public void doIt(Integer instance, State state, Trigger trigger) {
+            }
+        });
+        fleet.fire(2, Trigger.X);
+        fleet.fireAll(Trigger.X);
+
+        List<FlightRecord<State, Trigger>> records = recorder.snapshot();
+        assertEquals(5, records.size());
+        assertEquals(2, records.get(0).getInstance());
+        assertEquals(State.B, records.get(0).getDestination());
+        assertEquals(FireResult.UNHANDLED, records.get(3).getOutcome());
+        assertEquals(2, records.get(3).getInstance());
+    }
+
+    @Test
+    public void SnapshotsTakenWhileRecordingAreConsistent() throws InterruptedException {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .permit(Trigger.Y, State.A);
+
+        final ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config.freeze());
+        final FlightRecorder<State, Trigger> recorder = new FlightRecorder<>(64);
+        sm.setFlightRecorder(recorder);
+        sm.onUnhandledTrigger(new Action2<State, Trigger>() {
+            @Override
+            public void doIt(State state, Trigger trigger) {
+            }
+        });
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] writers = new Thread[3];
+        for (int i = 0; i < writers.length; i++) {
+            final Trigger trigger = i % 2 == 0 ? Trigger.X : Trigger.Y;
+            writers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        sm.fire(trigger);
+                    }
+                }
+            });
+            writers[i].start();
+        }
+
+        try {
+            for (int i = 0; i < 200; i++) {
+                long previous = -1;
+                for (FlightRecord<State, Trigger> record : recorder.snapshot()) {
+                    assertTrue(record.getSequence() > previous);
+                    previous = record.getSequence();
+                    if (record.getOutcome() == FireResult.HANDLED) {
+                        assertEquals(record.getTrigger() == Trigger.X ? State.A : State.B, record.getSource());
+                        assertEquals(record.getTrigger() == Trigger.X ? State.B : State.A, record.getDestination());
+                    } else {
+                        assertEquals(FireResult.UNHANDLED, record.getOutcome());
+                        assertEquals(record.getSource(), record.getDestination());
+                    }
+                }
+                Thread.yield();
+            }
+        } finally {
+            running.set(false);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        assertFalse(recorder.snapshot().isEmpty());
+    }
+
+    @Test
+    public void DumpWritesOneLinePerFire() throws IOException {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setFlightRecorder(recorder);
+        sm.fire(Trigger.X);
+        sm.tryFire(Trigger.X);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        recorder.dump(out);
+
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("0 1970-01-01T00:00:05Z X: A -> B HANDLED 1000ns", lines[0]);
+        assertEquals("1 1970-01-01T00:00:05Z X: B -> B UNHANDLED 1000ns", lines[1]);
+    }
+
+    @Test
+    public void CapacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(8, recorder.getCapacity());
+        assertEquals(1024, new FlightRecorder<State, Trigger>(1000).getCapacity());
+        assertTrue(new FlightRecorder<State, Trigger>(16).snapshot().isEmpty());
+    }
+
+    private static void assertRecord(FlightRecord<State, Trigger> record, long sequence, Trigger trigger, State source, State destination, FireResult outcome) {
+        assertEquals(sequence, record.getSequence());
+        assertEquals(trigger, record.getTrigger());
+        assertEquals(source, record.getSource());
+        assertEquals(destination, record.getDestination());
+        assertEquals(outcome, record.getOutcome());
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrozenConfigTests {
+
+    private boolean guard = true;
+
+    private final FuncBoolean guardFlag = new FuncBoolean() {
+        @Override
+        public boolean call() {
+            return guard;
+        }
+    };
+
+    private StateMachineConfig<State, Trigger> hierarchicalConfig() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+
+        config.configure(State.A)
+                .substateOf(State.B)
+                .permit(Trigger.X, State.C);
+
+        config.configure(State.B)
+                .substateOf(State.C)
+                .permit(Trigger.X, State.A)
+                .permitIf(Trigger.Y, State.A, guardFlag);
+
+        config.configure(State.C)
+                .permit(Trigger.Y, State.B)
+                .ignore(Trigger.Z);
+
+        return config;
+    }
+
+    @Test
+    public void FreezeIsIdempotent() {
+        StateMachineConfig<State, Trigger> config = hierarchicalConfig();
+        assertFalse(config.isFrozen());
+        assertSame(config, config.freeze());
+        assertSame(config, config.freeze());
+        assertTrue(config.isFrozen());
+        assertTrue(config.getRepresentation(State.A).isFrozen());
+    }
+
+    @Test
+    public void LocalHandlerTakesPrecedenceOverSuperstate() {
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, hierarchicalConfig().freeze());
+        sm.fire(Trigger.X);
+        assertEquals(State.C, sm.getState());
+    }
+
+    @Test
+    public void InheritedHandlersAreFound() {
+        StateMachineConfig<State, Trigger> config = hierarchicalConfig().freeze();
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fire(Trigger.Z);
+        assertEquals(State.A, sm.getState());
+
+        sm.fire(Trigger.Y);
+        assertEquals(State.A, sm.getState());
+    }
+
+    @Test
+    public void SuperstateHandlerIsUsedWhenLocalGuardFails() {
+        StateMachineConfig<State, Trigger> config = hierarchicalConfig().freeze();
+        guard = false;
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fire(Trigger.Y);
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test
+    public void PermittedTriggersMatchUnfrozenConfiguration() {
+        for (State state : State.values()) {
+            List<Trigger> expected = new StateMachine<>(state, hierarchicalConfig()).getPermittedTriggers();
+            List<Trigger> actual = new StateMachine<>(state, hierarchicalConfig().freeze()).getPermittedTriggers();
+            assertEquals(expected.size(), actual.size());
+            assertTrue(actual.containsAll(expected));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void MultiplePermittedGuardsStillFail() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.B)
+                .permit(Trigger.X, State.A)
+                .permit(Trigger.X, State.C);
+        config.configure(State.A)
+                .substateOf(State.B);
+
+        new StateMachine<>(State.A, config.freeze()).fire(Trigger.X);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void ConfigureAfterFreezeFails() {
+        hierarchicalConfig().freeze().configure(State.A);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void RetainedStateConfigurationCannotModifyFrozenConfig() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        StateConfiguration<State, Trigger> stateConfiguration = config.configure(State.A);
+        config.freeze();
+        stateConfiguration.permit(Trigger.X, State.B);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void TriggerParametersCannotBeSetAfterFreeze() {
+        new StateMachineConfig<State, Trigger>().freeze().setTriggerParameters(Trigger.X, String.class);
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GuardEvaluationPolicyTests {
+
+    private int calls = 0;
+
+    private final FuncBoolean countingTrue = new FuncBoolean() {
+        @Override
+        public boolean call() {
+            calls++;
+            return true;
+        }
+    };
+
+    private StateMachineConfig<State, Trigger> overlappingGuards(GuardEvaluationPolicy policy) {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.setGuardEvaluationPolicy(policy);
+        config.configure(State.A)
+                .permitIf(Trigger.X, State.B, countingTrue)
+                .permitIf(Trigger.X, State.C, countingTrue);
+        return config;
+    }
+
+    @Test
+    public void DefaultPolicyIsStrict() {
+        assertEquals(GuardEvaluationPolicy.STRICT, new StateMachineConfig<State, Trigger>().getGuardEvaluationPolicy());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void StrictPolicyRejectsOverlappingGuards() {
+        new StateMachine<>(State.A, overlappingGuards(GuardEvaluationPolicy.STRICT)).fire(Trigger.X);
+    }
+
+    @Test
+    public void FirstMatchTakesFirstSatisfiedGuard() {
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, overlappingGuards(GuardEvaluationPolicy.FIRST_MATCH));
+        sm.fire(Trigger.X);
+
+        assertEquals(State.B, sm.getState());
+        assertEquals(1, calls);
+    }
+
+    @Test
+    public void FirstMatchAppliesToFrozenConfig() {
+        StateMachineConfig<State, Trigger> config = overlappingGuards(GuardEvaluationPolicy.FIRST_MATCH).freeze();
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fire(Trigger.X);
+
+        assertEquals(State.B, sm.getState());
+        assertEquals(1, calls);
+    }
+
+    @Test
+    public void PolicyAppliesToStatesConfiguredEarlier() {
+        StateMachineConfig<State, Trigger> config = overlappingGuards(GuardEvaluationPolicy.STRICT);
+        config.setGuardEvaluationPolicy(GuardEvaluationPolicy.FIRST_MATCH);
+
+        assertEquals(GuardEvaluationPolicy.FIRST_MATCH, config.getRepresentation(State.A).getGuardEvaluationPolicy());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void PolicyCannotChangeAfterFreeze() {
+        overlappingGuards(GuardEvaluationPolicy.STRICT).freeze().setGuardEvaluationPolicy(GuardEvaluationPolicy.FIRST_MATCH);
+    }
+}
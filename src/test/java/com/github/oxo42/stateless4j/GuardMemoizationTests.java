@@ -0,0 +1,93 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
+import com.github.oxo42.stateless4j.triggers.TriggerBehaviour;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GuardMemoizationTests {
+
+    private int calls = 0;
+    private boolean open = true;
+
+    private final FuncBoolean countingGuard = new FuncBoolean() {
+        @Override
+        public boolean call() {
+            calls++;
+            return open;
+        }
+    };
+
+    @Test
+    public void GuardAndItsNegationAreEvaluatedOncePerFire() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitIfElseIgnore(Trigger.X, State.B, countingGuard);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        open = false;
+        sm.fire(Trigger.X);
+        assertEquals(State.A, sm.getState());
+        assertEquals(1, calls);
+
+        open = true;
+        sm.fire(Trigger.X);
+        assertEquals(State.B, sm.getState());
+        assertEquals(2, calls);
+    }
+
+    @Test
+    public void SharedGuardIsEvaluatedOncePerQuery() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitIf(Trigger.X, State.B, countingGuard)
+                .permitIf(Trigger.Y, State.C, countingGuard)
+                .substateOf(State.C);
+        config.configure(State.C)
+                .permitIf(Trigger.Z, State.B, countingGuard);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        assertEquals(3, sm.getPermittedTriggers().size());
+        assertEquals(1, calls);
+
+        sm = new StateMachine<>(State.A, config.freeze());
+        assertEquals(3, sm.getPermittedTriggers().size());
+        assertEquals(2, calls);
+    }
+
+    @Test
+    public void CanFireAndPermittedTriggersShareOneGuardPass() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitIf(Trigger.X, State.B, countingGuard)
+                .permitIf(Trigger.Y, State.C, countingGuard);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        List<Trigger> permitted = new ArrayList<>();
+
+        assertTrue(sm.canFire(Trigger.X, permitted));
+        assertEquals(2, permitted.size());
+        assertEquals(1, calls);
+    }
+
+    @Test
+    public void RepresentationReturnsHandlerAndPermittedTriggers() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitIf(Trigger.X, State.B, countingGuard)
+                .permitIf(Trigger.Y, State.C, countingGuard);
+        config.freeze();
+
+        List<Trigger> permitted = new ArrayList<>();
+        TriggerBehaviour<State, Trigger> handler = config.getRepresentation(State.A).tryFindHandler(Trigger.Y, permitted, new GuardContext());
+
+        assertEquals(State.C, handler.transitionsTo(State.A, new Object[0]));
+        assertTrue(permitted.contains(Trigger.X));
+        assertTrue(permitted.contains(Trigger.Y));
+        assertEquals(1, calls);
+    }
+}
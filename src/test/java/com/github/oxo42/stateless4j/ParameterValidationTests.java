@@ -0,0 +1,114 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.conversion.ParameterValidator;
+import com.github.oxo42.stateless4j.delegates.Action;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParameterValidationTests {
+
+    @Test
+    public void SubtypesAreAccepted() {
+        ParameterValidator validator = ParameterValidator.compile(Number.class, CharSequence.class);
+        validator.validate(new Object[]{1, "a"});
+        validator.validate(new Object[]{2L, new StringBuilder("b")});
+        validator.validate(new Object[]{3, "c"});
+    }
+
+    @Test
+    public void NullAndObjectParametersAcceptAnything() {
+        ParameterValidator validator = ParameterValidator.compile(String.class, Object.class);
+        validator.validate(new Object[]{null, 1});
+    }
+
+    @Test
+    public void WrongTypeIsRejectedWithItsPosition() {
+        ParameterValidator validator = ParameterValidator.compile(String.class, Number.class);
+        validator.validate(new Object[]{"a", 1});
+        try {
+            validator.validate(new Object[]{"a", "b"});
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("The argument in position 1 is of type class java.lang.String but must be of type class java.lang.Number.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void ArrayParametersAcceptCovariantArrays() {
+        ParameterValidator validator = ParameterValidator.compile(Object[].class, Number[].class);
+        validator.validate(new Object[]{new String[]{"a"}, new Integer[]{1}});
+        try {
+            validator.validate(new Object[]{new Object[0], new String[0]});
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("The argument in position 1"));
+        }
+    }
+
+    @Test
+    public void TriggerWithArrayParameterAcceptsASubtypeArray() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.setTriggerParameters(Trigger.X, Object[].class);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.publicFire(Trigger.X, (Object) new String[]{"a"});
+
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void TooFewArgumentsAreRejected() {
+        ParameterValidator.compile(String.class, Number.class).validate(new Object[]{"a"});
+    }
+
+    @Test
+    public void NoneSkipsValidation() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.setTriggerParameters(Trigger.X, String.class);
+        config.setParameterValidationPolicy(ParameterValidationPolicy.NONE);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.publicFire(Trigger.X, 42);
+
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void EveryFireValidatesQueuedTriggersAgain() {
+        fireQueuedTriggerChangedAfterSubmission(ParameterValidationPolicy.EVERY_FIRE);
+    }
+
+    @Test
+    public void OnceValidatesOnlyOnSubmission() {
+        StateMachine<State, Trigger> sm = fireQueuedTriggerChangedAfterSubmission(ParameterValidationPolicy.ONCE);
+        assertEquals(State.C, sm.getState());
+    }
+
+    private StateMachine<State, Trigger> fireQueuedTriggerChangedAfterSubmission(ParameterValidationPolicy policy) {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.setTriggerParameters(Trigger.Y, String.class);
+        config.setParameterValidationPolicy(policy);
+        final StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        final Object[] args = {"valid"};
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        sm.publicFire(Trigger.Y, args);
+                        args[0] = 42;
+                    }
+                })
+                .permit(Trigger.Y, State.C);
+
+        sm.setFiringMode(FiringMode.QUEUED);
+        sm.fire(Trigger.X);
+        return sm;
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.delegates.Action3;
+import com.github.oxo42.stateless4j.delegates.ActionDouble;
+import com.github.oxo42.stateless4j.delegates.ActionInt;
+import com.github.oxo42.stateless4j.delegates.ActionLong;
+import com.github.oxo42.stateless4j.transitions.Transition;
+import com.github.oxo42.stateless4j.triggers.DoubleTrigger;
+import com.github.oxo42.stateless4j.triggers.IntTrigger;
+import com.github.oxo42.stateless4j.triggers.LongTrigger;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class PrimitiveTriggerTests {
+
+    private final List<Long> received = new ArrayList<>();
+
+    private ActionLong record() {
+        return new ActionLong() {
+            @Override
+            public void doIt(long arg) {
+                received.add(arg);
+            }
+        };
+    }
+
+    @Test
+    public void PrimitiveArgumentsReachTheEntryActions() {
+        final double[] amount = new double[1];
+        final int[] count = new int[1];
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        LongTrigger<Trigger> x = config.setLongTriggerParameter(Trigger.X);
+        IntTrigger<Trigger> y = config.setIntTriggerParameter(Trigger.Y);
+        DoubleTrigger<Trigger> z = config.setDoubleTriggerParameter(Trigger.Z);
+        config.configure(State.A)
+                .onEntryFrom(z, new ActionDouble() {
+                    @Override
+                    public void doIt(double arg) {
+                        amount[0] = arg;
+                    }
+                })
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, record())
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .onEntryFrom(y, new ActionInt() {
+                    @Override
+                    public void doIt(int arg) {
+                        count[0] = arg;
+                    }
+                })
+                .permit(Trigger.Z, State.A);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fire(x, Long.MAX_VALUE);
+        sm.fire(y, -7);
+        assertEquals(FireResult.HANDLED, sm.tryFire(z, 2.5));
+
+        assertEquals(State.A, sm.getState());
+        assertEquals(Long.MAX_VALUE, (long) received.get(0));
+        assertEquals(-7, count[0]);
+        assertEquals(2.5, amount[0], 0);
+    }
+
+    @Test
+    public void NestedFireKeepsTheOuterArgument() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        final LongTrigger<Trigger> x = config.setLongTriggerParameter(Trigger.X);
+        final LongTrigger<Trigger> y = config.setLongTriggerParameter(Trigger.Y);
+        final StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, new ActionLong() {
+                    @Override
+                    public void doIt(long arg) {
+                        sm.fire(y, 2);
+                        received.add(arg);
+                    }
+                })
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .onEntryFrom(y, record());
+
+        sm.fire(x, 1);
+
+        assertEquals(2, (long) received.get(0));
+        assertEquals(1, (long) received.get(1));
+    }
+
+    @Test
+    public void DeferredAndQueuedTriggersKeepTheirArguments() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        LongTrigger<Trigger> x = config.setLongTriggerParameter(Trigger.X);
+        config.configure(State.A)
+                .defer(Trigger.X)
+                .permit(Trigger.Y, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, record())
+                .permitReentry(Trigger.X);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setFiringMode(FiringMode.QUEUED);
+        sm.fire(x, 1);
+        sm.fire(x, 2);
+        sm.fire(Trigger.Y);
+        sm.fire(x, 3);
+
+        assertEquals(3, received.size());
+        assertEquals(1, (long) received.get(0));
+        assertEquals(2, (long) received.get(1));
+        assertEquals(3, (long) received.get(2));
+    }
+
+    @Test
+    public void BoxedArgumentIsAccepted() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        LongTrigger<Trigger> x = config.setLongTriggerParameter(Trigger.X);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, record());
+
+        new StateMachine<>(State.A, config).publicFire(Trigger.X, 7L);
+
+        assertEquals(7, (long) received.get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void ArgumentOfAnotherTypeIsRejected() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.setLongTriggerParameter(Trigger.X);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        new StateMachine<>(State.A, config).publicFire(Trigger.X, 1);
+    }
+
+    @Test
+    public void RawArgumentsHoldTheBoxedValue() {
+        final List<Object> raw = new ArrayList<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        IntTrigger<Trigger> x = config.setIntTriggerParameter(Trigger.X);
+        DoubleTrigger<Trigger> y = config.setDoubleTriggerParameter(Trigger.Y);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(new Action2<Transition<State, Trigger>, Object[]>() {
+                    @Override
+                    public void doIt(Transition<State, Trigger> transition, Object[] args) {
+                        raw.add(args[0]);
+                    }
+                });
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.onUnhandledTrigger(new Action3<State, Trigger, Object[]>() {
+            @Override
+            public void doIt(State state, Trigger trigger, Object[] args) {
+                raw.add(args[0]);
+            }
+        });
+        sm.fire(x, 5);
+        sm.fire(y, 1.5);
+
+        assertEquals(2, raw.size());
+        assertEquals(5, raw.get(0));
+        assertEquals(1.5, raw.get(1));
+    }
+
+    @Test
+    public void FleetAndConcurrentMachineAcceptPrimitiveTriggers() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        LongTrigger<Trigger> x = config.setLongTriggerParameter(Trigger.X);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, record());
+
+        StateMachineFleet<State, Trigger> fleet = new StateMachineFleet<>(2, State.A, config);
+        fleet.fire(1, x, 1);
+        ConcurrentStateMachine<State, Trigger> sm = new ConcurrentStateMachine<>(State.A, config);
+        sm.fire(x, 2);
+
+        assertEquals(FireResult.UNHANDLED, sm.tryFire(x, 3));
+        assertEquals(State.B, fleet.getState(1));
+        assertEquals(2, received.size());
+        assertEquals(1, (long) received.get(0));
+        assertEquals(2, (long) received.get(1));
+    }
+
+    @Test
+    public void AsyncFireAndMailboxAcceptPrimitiveTriggers() throws Exception {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        LongTrigger<Trigger> x = config.setLongTriggerParameter(Trigger.X);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, record())
+                .permitReentry(Trigger.X);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.fireAsync(x, 1).get();
+        StateMachineMailbox<State, Trigger> mailbox = new StateMachineMailbox<>(sm, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        mailbox.send(x, 2);
+
+        assertEquals(2, received.size());
+        assertEquals(1, (long) received.get(0));
+        assertEquals(2, (long) received.get(1));
+    }
+
+    @Test
+    public void ToStringShowsThePrimitiveType() {
+        assertEquals("X(long)", new LongTrigger<>(Trigger.X).toString());
+        assertEquals("X(int)", new IntTrigger<>(Trigger.X).toString());
+        assertEquals("X(double)", new DoubleTrigger<>(Trigger.X).toString());
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.oxo42.stateless4j;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StateHierarchyTests {
+
+    private enum S {
+        ROOT, LEFT, LEFT_A, LEFT_B, RIGHT, RIGHT_A, OUTSIDE, UNCONFIGURED
+    }
+
+    private enum T {
+        X
+    }
+
+    private StateMachineConfig<S, T> config() {
+        StateMachineConfig<S, T> config = new StateMachineConfig<>();
+        config.configure(S.ROOT);
+        config.configure(S.OUTSIDE);
+        config.configure(S.LEFT).substateOf(S.ROOT);
+        config.configure(S.RIGHT).substateOf(S.ROOT);
+        config.configure(S.LEFT_A).substateOf(S.LEFT);
+        config.configure(S.LEFT_B).substateOf(S.LEFT);
+        config.configure(S.RIGHT_A).substateOf(S.RIGHT);
+        return config;
+    }
+
+    @Test
+    public void FrozenInclusionMatchesRecursiveInclusion() {
+        StateMachineConfig<S, T> mutable = config();
+        StateMachineConfig<S, T> frozen = config().freeze();
+
+        for (S state : S.values()) {
+            StateRepresentation<S, T> expected = mutable.getRepresentation(state);
+            StateRepresentation<S, T> actual = frozen.getRepresentation(state);
+            if (expected == null) {
+                assertNull(actual);
+                continue;
+            }
+            for (S other : S.values()) {
+                assertEquals(state + " includes " + other, expected.includes(other), actual.includes(other));
+                assertEquals(state + " in " + other, expected.isIncludedIn(other), actual.isIncludedIn(other));
+            }
+        }
+    }
+
+    @Test
+    public void IsInStateUsesFrozenHierarchy() {
+        StateMachine<S, T> sm = new StateMachine<>(S.LEFT_B, config().freeze());
+
+        assertTrue(sm.isInState(S.LEFT_B));
+        assertTrue(sm.isInState(S.LEFT));
+        assertTrue(sm.isInState(S.ROOT));
+        assertFalse(sm.isInState(S.LEFT_A));
+        assertFalse(sm.isInState(S.RIGHT));
+        assertFalse(sm.isInState(S.OUTSIDE));
+        assertFalse(sm.isInState(S.UNCONFIGURED));
+    }
+
+    @Test
+    public void RepeatedSubstateOfIsNumberedOnce() {
+        StateMachineConfig<S, T> config = config();
+        config.configure(S.LEFT_A).substateOf(S.LEFT);
+        config.freeze();
+
+        assertTrue(config.getRepresentation(S.LEFT).includes(S.LEFT_A));
+        assertFalse(config.getRepresentation(S.LEFT_A).includes(S.LEFT_B));
+        assertFalse(config.getRepresentation(S.RIGHT).includes(S.LEFT_B));
+    }
+
+    @Test
+    public void UnconfiguredStateIsNotInFrozenMachineState() {
+        StateMachine<S, T> sm = new StateMachine<>(S.UNCONFIGURED, config().freeze());
+
+        assertTrue(sm.isInState(S.UNCONFIGURED));
+        assertFalse(sm.isInState(S.ROOT));
+    }
+}
@@ -0,0 +1,295 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Action3;
+import com.github.oxo42.stateless4j.delegates.Func;
+import com.github.oxo42.stateless4j.delegates.Func2;
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters1;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.*;
+
+public class StateMachineFleetTests {
+
+    private enum S {
+        A, B, C, D
+    }
+
+    private final List<String> log = new ArrayList<>();
+    private StateMachineFleet<S, Trigger> fleet;
+
+    private StateMachineConfig<S, Trigger> config() {
+        StateMachineConfig<S, Trigger> config = new StateMachineConfig<>();
+        config.configure(S.A)
+                .permit(Trigger.X, S.B)
+                .ignore(Trigger.Y);
+        config.configure(S.B)
+                .substateOf(S.C)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        log.add("enter B " + fleet.getCurrentInstance());
+                    }
+                })
+                .permit(Trigger.Y, S.A);
+        config.configure(S.C)
+                .permit(Trigger.Z, S.D);
+        return config;
+    }
+
+    @Test
+    public void InstancesStartInInitialState() {
+        fleet = new StateMachineFleet<>(3, S.A, config());
+
+        assertEquals(3, fleet.size());
+        for (int i = 0; i < fleet.size(); i++) {
+            assertEquals(S.A, fleet.getState(i));
+        }
+        assertTrue(fleet.configuration().isFrozen());
+    }
+
+    @Test
+    public void InstancesTransitionIndependently() {
+        fleet = new StateMachineFleet<>(3, S.A, config());
+        fleet.fire(1, Trigger.X);
+
+        assertEquals(S.A, fleet.getState(0));
+        assertEquals(S.B, fleet.getState(1));
+        assertEquals(S.A, fleet.getState(2));
+        assertTrue(fleet.isInState(1, S.C));
+        assertFalse(fleet.isInState(0, S.C));
+    }
+
+    @Test
+    public void ActionsSeeTheFiringInstance() {
+        fleet = new StateMachineFleet<>(3, S.A, config());
+        fleet.fire(2, Trigger.X);
+        fleet.fire(0, Trigger.X);
+
+        assertEquals(2, log.size());
+        assertEquals("enter B 2", log.get(0));
+        assertEquals("enter B 0", log.get(1));
+        assertEquals(-1, fleet.getCurrentInstance());
+    }
+
+    @Test
+    public void InheritedTriggerLeadsToUnconfiguredState() {
+        fleet = new StateMachineFleet<>(2, S.B, config());
+        fleet.fire(0, Trigger.Z);
+
+        assertEquals(S.D, fleet.getState(0));
+        assertEquals(S.B, fleet.getState(1));
+        assertEquals(FireResult.UNHANDLED, fleet.tryFire(0, Trigger.X));
+    }
+
+    @Test
+    public void QueriesUseTheInstanceState() {
+        fleet = new StateMachineFleet<>(2, S.A, config());
+        fleet.setState(1, S.B);
+
+        assertTrue(fleet.canFire(0, Trigger.X));
+        assertFalse(fleet.canFire(1, Trigger.X));
+        assertTrue(fleet.getPermittedTriggers(1).contains(Trigger.Z));
+        assertEquals(FireResult.IGNORED, fleet.tryFire(0, Trigger.Y));
+    }
+
+    @Test
+    public void UnhandledTriggerReportsInstance() {
+        fleet = new StateMachineFleet<>(5, S.A, config());
+        final List<Integer> unhandled = new ArrayList<>();
+        fleet.onUnhandledTrigger(new Action3<Integer, S, Trigger>() {
+            @Override
+            public void doIt(Integer instance, S state, Trigger trigger) {
+                unhandled.add(instance);
+            }
+        });
+        fleet.fire(4, Trigger.Z);
+
+        assertEquals(1, unhandled.size());
+        assertEquals(4, (int) unhandled.get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void UnhandledTriggerThrowsByDefault() {
+        fleet = new StateMachineFleet<>(1, S.A, config());
+        fleet.fire(0, Trigger.Z);
+    }
+
+    @Test
+    public void DynamicDestinationsAndParameters() {
+        StateMachineConfig<S, Trigger> config = new StateMachineConfig<>();
+        TriggerWithParameters1<S, Trigger> go = config.setTriggerParameters(Trigger.X, S.class);
+        config.configure(S.A)
+                .permitDynamic(go, new Func2<S, S>() {
+                    @Override
+                    public S call(S state) {
+                        return state;
+                    }
+                })
+                .permitDynamic(Trigger.Y, new Func<S>() {
+                    @Override
+                    public S call() {
+                        return S.C;
+                    }
+                });
+        config.configure(S.B)
+                .onEntryFrom(go, new Action1<S>() {
+                    @Override
+                    public void doIt(S state) {
+                        log.add("entered from " + state);
+                    }
+                });
+        fleet = new StateMachineFleet<>(3, S.A, config);
+
+        fleet.fire(0, go, S.B);
+        fleet.fire(1, go, S.D);
+        fleet.fire(2, Trigger.Y);
+
+        assertEquals(S.B, fleet.getState(0));
+        assertEquals(S.D, fleet.getState(1));
+        assertEquals(S.C, fleet.getState(2));
+        assertEquals("entered from B", log.get(0));
+    }
+
+    @Test
+    public void FleetRunsOnDirectStore() {
+        fleet = new StateMachineFleet<>(new DirectStateStore(4, 255), S.A, config());
+        fleet.fire(3, Trigger.X);
+        fleet.fire(3, Trigger.Z);
+
+        assertEquals(S.A, fleet.getState(0));
+        assertEquals(S.D, fleet.getState(3));
+    }
+
+    @Test
+    public void AttachedMachineSharesInstanceState() {
+        fleet = new StateMachineFleet<>(2, S.A, config());
+        StateMachine<S, Trigger> machine = fleet.attach(1);
+
+        machine.fire(Trigger.X);
+        assertEquals(S.B, fleet.getState(1));
+        assertEquals(S.A, fleet.getState(0));
+
+        fleet.fire(1, Trigger.Y);
+        assertEquals(S.A, machine.getState());
+    }
+
+    @Test
+    public void FireAllEvaluatesGuardsAfterTheActionsOfEarlierInstances() {
+        final int[] entered = {0};
+        StateMachineConfig<S, Trigger> config = new StateMachineConfig<>();
+        config.configure(S.A)
+                .permitIf(Trigger.X, S.B, new FuncBoolean() {
+                    @Override
+                    public boolean call() {
+                        return entered[0] < 2;
+                    }
+                })
+                .ignoreIf(Trigger.X, new FuncBoolean() {
+                    @Override
+                    public boolean call() {
+                        return entered[0] >= 2;
+                    }
+                });
+        config.configure(S.B)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        entered[0]++;
+                    }
+                })
+                .permit(Trigger.X, S.C);
+        fleet = new StateMachineFleet<>(6, S.A, config);
+        fleet.setState(1, S.B);
+        fleet.setState(4, S.B);
+
+        fleet.fireAll(Trigger.X);
+
+        assertEquals(2, entered[0]);
+        assertEquals(S.B, fleet.getState(0));
+        assertEquals(S.C, fleet.getState(1));
+        assertEquals(S.B, fleet.getState(2));
+        assertEquals(S.A, fleet.getState(3));
+        assertEquals(S.C, fleet.getState(4));
+        assertEquals(S.A, fleet.getState(5));
+    }
+
+    @Test
+    public void FireAllRunsActionsInBatchOrder() {
+        fleet = new StateMachineFleet<>(5, S.A, config());
+        fleet.setState(3, S.B);
+        final List<Integer> unhandled = new ArrayList<>();
+        fleet.onUnhandledTrigger(new Action3<Integer, S, Trigger>() {
+            @Override
+            public void doIt(Integer instance, S state, Trigger trigger) {
+                unhandled.add(instance);
+            }
+        });
+
+        fleet.fireAll(new int[]{4, 3, 0}, Trigger.X);
+
+        assertEquals(2, log.size());
+        assertEquals("enter B 4", log.get(0));
+        assertEquals("enter B 0", log.get(1));
+        assertEquals(1, unhandled.size());
+        assertEquals(3, (int) unhandled.get(0));
+        assertEquals(S.A, fleet.getState(1));
+    }
+
+    @Test
+    public void FireInParallelKeepsOrderPerInstance() {
+        final int size = 1000;
+        final AtomicIntegerArray entered = new AtomicIntegerArray(size);
+        StateMachineConfig<S, Trigger> config = new StateMachineConfig<>();
+        config.configure(S.A)
+                .permit(Trigger.X, S.B);
+        config.configure(S.B)
+                .permit(Trigger.Y, S.C);
+        config.configure(S.C)
+                .permit(Trigger.Z, S.D);
+        config.configure(S.D)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        entered.incrementAndGet(fleet.getCurrentInstance());
+                    }
+                });
+        fleet = new StateMachineFleet<>(size, S.A, config);
+
+        Trigger[] rounds = {Trigger.X, Trigger.Y, Trigger.Z};
+        int[] instances = new int[size * rounds.length];
+        Trigger[] triggers = new Trigger[instances.length];
+        for (int round = 0; round < rounds.length; round++) {
+            for (int i = 0; i < size; i++) {
+                instances[round * size + i] = i;
+                triggers[round * size + i] = rounds[round];
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            fleet.fireInParallel(instances, triggers, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < size; i++) {
+            assertEquals(S.D, fleet.getState(i));
+            assertEquals(1, entered.get(i));
+        }
+        assertEquals(-1, fleet.getCurrentInstance());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void FireInParallelRejectsMismatchedBatch() {
+        fleet = new StateMachineFleet<>(2, S.A, config());
+        fleet.fireInParallel(new int[]{0, 1}, new Trigger[]{Trigger.X});
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters1;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class StateMachineMailboxTests {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void TriggersFireInOrderWithArguments() throws InterruptedException {
+        final List<String> log = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        TriggerWithParameters1<String, Trigger> x = config.setTriggerParameters(Trigger.X, String.class);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntryFrom(x, new Action1<String>() {
+                    @Override
+                    public void doIt(String arg) {
+                        log.add(arg);
+                    }
+                })
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        done.countDown();
+                    }
+                });
+
+        StateMachineMailbox<State, Trigger> mailbox = new StateMachineMailbox<>(new StateMachine<>(State.A, config), executor);
+        mailbox.send(x, "arg");
+        mailbox.send(Trigger.Y);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, log.size());
+        assertEquals("arg", log.get(0));
+        assertEquals(State.C, mailbox.getMachine().getState());
+    }
+
+    @Test
+    public void MachineIsNeverFiredConcurrently() throws InterruptedException {
+        final int producers = 4;
+        final int sends = 2000;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final CountDownLatch fired = new CountDownLatch(producers * sends);
+        Action enter = new Action() {
+            @Override
+            public void doIt() {
+                if (active.incrementAndGet() != 1) {
+                    overlaps.incrementAndGet();
+                }
+                active.decrementAndGet();
+                fired.countDown();
+            }
+        };
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitReentry(Trigger.X)
+                .onEntry(enter);
+
+        final StateMachineMailbox<State, Trigger> mailbox = new StateMachineMailbox<>(new StateMachine<>(State.A, config), executor, 16);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < sends; i++) {
+                        mailbox.send(Trigger.X);
+                    }
+                }
+            });
+            producer.start();
+            threads.add(producer);
+        }
+        for (Thread producer : threads) {
+            producer.join();
+        }
+
+        assertTrue(fired.await(10, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+    }
+
+    @Test
+    public void ErrorsAreReportedAndDrainingContinues() throws InterruptedException {
+        final List<Trigger> errors = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        done.countDown();
+                    }
+                });
+
+        StateMachineMailbox<State, Trigger> mailbox = new StateMachineMailbox<>(new StateMachine<>(State.A, config), executor);
+        mailbox.onError(new Action2<Trigger, RuntimeException>() {
+            @Override
+            public void doIt(Trigger trigger, RuntimeException error) {
+                errors.add(trigger);
+            }
+        });
+        mailbox.send(Trigger.Z);
+        mailbox.send(Trigger.X);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, errors.size());
+        assertEquals(Trigger.Z, errors.get(0));
+    }
+}
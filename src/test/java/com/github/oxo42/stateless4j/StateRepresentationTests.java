@@ -2,6 +2,7 @@ package com.github.oxo42.stateless4j;
 
 import com.github.oxo42.stateless4j.delegates.Action1;
 import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.delegates.FuncBoolean;
 import com.github.oxo42.stateless4j.transitions.Transition;
 import com.github.oxo42.stateless4j.triggers.InternalTriggerBehaviour;
 
@@ -11,6 +12,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 
 public class StateRepresentationTests {
@@ -402,6 +404,60 @@ public class StateRepresentationTests {
         assertTrue(subOrder < superOrder);
     }
 
+    @Test
+    public void TheHandlerWhoseGuardIsMetIsChosenAmongSeveral() {
+        for (boolean frozen : new boolean[]{false, true}) {
+            StateMachine<State, Trigger> sm = new StateMachine<>(State.B, guardedConfig(false, true, frozen));
+            sm.fire(Trigger.X);
+            assertEquals(State.C, sm.getState());
+        }
+    }
+
+    @Test
+    public void WhenNoLocalGuardIsMet_TheSuperstateHandlerIsChosen() {
+        for (boolean frozen : new boolean[]{false, true}) {
+            StateMachine<State, Trigger> sm = new StateMachine<>(State.B, guardedConfig(false, false, frozen));
+            assertTrue(sm.canFire(Trigger.X));
+            sm.fire(Trigger.X);
+            assertEquals(State.A, sm.getState());
+        }
+    }
+
+    @Test
+    public void WhenTwoGuardsAreMet_FiringThrows() {
+        for (boolean frozen : new boolean[]{false, true}) {
+            StateMachine<State, Trigger> sm = new StateMachine<>(State.B, guardedConfig(true, true, frozen));
+            try {
+                sm.fire(Trigger.X);
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().startsWith("Multiple permitted exit transitions are configured from state 'B'"));
+            }
+            assertEquals(State.B, sm.getState());
+        }
+    }
+
+    private StateMachineConfig<State, Trigger> guardedConfig(final boolean toA, final boolean toC, boolean frozen) {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitReentry(Trigger.X);
+        config.configure(State.B)
+                .substateOf(State.A)
+                .permitIf(Trigger.X, State.A, new FuncBoolean() {
+                    @Override
+                    public boolean call() {
+                        return toA;
+                    }
+                })
+                .permitIf(Trigger.X, State.C, new FuncBoolean() {
+                    @Override
+                    public boolean call() {
+                        return toC;
+                    }
+                });
+        return frozen ? config.freeze() : config;
+    }
+
     StateRepresentation<State, Trigger> CreateRepresentation(State state) {
         return new StateRepresentation<>(state);
     }
@@ -0,0 +1,261 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.Action1;
+import com.github.oxo42.stateless4j.delegates.Func;
+import com.github.oxo42.stateless4j.delegates.FuncLong;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class TimedTransitionTests {
+
+    private long time = 0;
+
+    private final TimingWheel wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, new FuncLong() {
+        @Override
+        public long call() {
+            return time;
+        }
+    });
+
+    private void advanceTo(long millis) {
+        time = TimeUnit.MILLISECONDS.toNanos(millis);
+        wheel.advance();
+    }
+
+    @Test
+    public void TriggerFiresAfterTheDelay() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAfter(Duration.ofMinutes(15), Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setTimingWheel(wheel);
+
+        advanceTo(Duration.ofMinutes(15).toMillis() - 1);
+        assertEquals(State.A, sm.getState());
+        advanceTo(Duration.ofMinutes(15).toMillis());
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test
+    public void TimeoutIsCancelledOnExit() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.Y, State.B);
+        config.configure(State.B)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.C)
+                .permit(Trigger.Y, State.A);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setTimingWheel(wheel);
+        sm.fire(Trigger.Y);
+        assertEquals(1, wheel.size());
+        sm.fire(Trigger.Y);
+
+        assertEquals(0, wheel.size());
+        advanceTo(20);
+        assertEquals(State.A, sm.getState());
+    }
+
+    @Test
+    public void TimeoutIsRearmedOnReentry() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.B)
+                .permitReentry(Trigger.Y);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setTimingWheel(wheel);
+        advanceTo(8);
+        sm.fire(Trigger.Y);
+
+        advanceTo(12);
+        assertEquals(State.A, sm.getState());
+        assertEquals(1, wheel.size());
+        advanceTo(18);
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test
+    public void SuperstateTimeoutSurvivesSubstateTransitions() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.C);
+        config.configure(State.B)
+                .substateOf(State.A)
+                .permit(Trigger.Y, State.A);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.B, config.freeze());
+        sm.setTimingWheel(wheel);
+        advanceTo(5);
+        sm.fire(Trigger.Y);
+
+        assertEquals(1, wheel.size());
+        advanceTo(10);
+        assertEquals(State.C, sm.getState());
+    }
+
+    @Test
+    public void TimeoutsAreIgnoredWithoutAWheel() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        advanceTo(20);
+
+        assertEquals(State.A, sm.getState());
+        assertEquals(0, wheel.size());
+        sm.fire(Trigger.X);
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test
+    public void UnhandledTimeoutIsDropped() {
+        final AtomicReference<State> state = new AtomicReference<>(State.A);
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, new Func<State>() {
+            @Override
+            public State call() {
+                return state.get();
+            }
+        }, new Action1<State>() {
+            @Override
+            public void doIt(State s) {
+                state.set(s);
+            }
+        }, config);
+        sm.setTimingWheel(wheel);
+        // changed behind the machine's back, so the timeout is still armed
+        state.set(State.C);
+        advanceTo(10);
+
+        assertEquals(State.C, sm.getState());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void ThrowingTimeoutDoesNotStopTheOthers() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.B);
+        config.configure(State.B)
+                .onEntry(new Action() {
+                    @Override
+                    public void doIt() {
+                        throw new IllegalArgumentException("entry");
+                    }
+                });
+
+        StateMachine<State, Trigger> first = new StateMachine<>(State.A, config);
+        StateMachine<State, Trigger> second = new StateMachine<>(State.A, config);
+        first.setTimingWheel(wheel);
+        second.setTimingWheel(wheel);
+        try {
+            advanceTo(10);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, e.getSuppressed().length);
+        }
+
+        assertEquals(State.B, first.getState());
+        assertEquals(State.B, second.getState());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void DispatcherFiresTimedOutTriggers() {
+        final List<Runnable> dispatched = new ArrayList<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setTimingWheel(wheel, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                dispatched.add(command);
+            }
+        });
+        advanceTo(10);
+
+        assertEquals(State.A, sm.getState());
+        assertEquals(1, dispatched.size());
+        dispatched.get(0).run();
+        assertEquals(State.B, sm.getState());
+    }
+
+    @Test
+    public void TimeoutExitedBeforeItIsDispatchedIsDropped() {
+        final List<Runnable> dispatched = new ArrayList<>();
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.B)
+                .permit(Trigger.Y, State.C);
+        config.configure(State.C)
+                .permit(Trigger.X, State.A);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.setTimingWheel(wheel, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                dispatched.add(command);
+            }
+        });
+        advanceTo(10);
+        sm.fire(Trigger.Y);
+        dispatched.get(0).run();
+
+        assertEquals(State.C, sm.getState());
+    }
+
+    @Test
+    public void MailboxFiresTimedOutTriggers() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        StateMachineMailbox<State, Trigger> mailbox = new StateMachineMailbox<>(sm, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        sm.setTimingWheel(wheel, mailbox);
+        advanceTo(10);
+
+        assertEquals(State.B, sm.getState());
+        assertTrue(mailbox.isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void FleetRejectsTimedTransitions() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.B);
+
+        new StateMachineFleet<>(2, State.A, config);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void ConcurrentStateMachineRejectsTimedTransitions() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.B)
+                .permitAfter(Duration.ofMillis(10), Trigger.X, State.A);
+
+        new ConcurrentStateMachine<>(State.A, config);
+    }
+}
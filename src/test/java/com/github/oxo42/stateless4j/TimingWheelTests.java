@@ -0,0 +1,150 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import com.github.oxo42.stateless4j.delegates.FuncLong;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTests {
+
+    private long time = 0;
+    private final List<Long> fired = new ArrayList<>();
+
+    private final TimingWheel wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, new FuncLong() {
+        @Override
+        public long call() {
+            return time;
+        }
+    });
+
+    private Action record(final long id) {
+        return new Action() {
+            @Override
+            public void doIt() {
+                fired.add(id);
+            }
+        };
+    }
+
+    private void advanceTo(long millis) {
+        time = TimeUnit.MILLISECONDS.toNanos(millis);
+        wheel.advance();
+    }
+
+    @Test
+    public void TimeoutFiresOnceItsDelayHasElapsed() {
+        wheel.schedule(10, TimeUnit.MILLISECONDS, record(1));
+
+        advanceTo(9);
+        assertTrue(fired.isEmpty());
+        advanceTo(10);
+        assertEquals(1, fired.size());
+        advanceTo(100);
+        assertEquals(1, fired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void TimeoutsFireInDeadlineOrderAcrossWheels() {
+        long[] delays = {70_000, 5, 4_096, 64, 300_000, 63, 1};
+        for (long delay : delays) {
+            wheel.schedule(delay, TimeUnit.MILLISECONDS, record(delay));
+        }
+
+        advanceTo(1_000_000);
+
+        assertEquals(delays.length, fired.size());
+        for (int i = 1; i < fired.size(); i++) {
+            assertTrue(fired.get(i - 1) < fired.get(i));
+        }
+    }
+
+    @Test
+    public void TimeoutsFireAtTheirExactTick() {
+        for (long delay = 1; delay < 20_000; delay += 997) {
+            wheel.schedule(delay, TimeUnit.MILLISECONDS, record(delay));
+        }
+
+        for (long t = 1; t < 20_000; t++) {
+            advanceTo(t);
+            if (!fired.isEmpty()) {
+                assertEquals(t, (long) fired.get(0));
+                fired.clear();
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void IrregularAdvancesFireExactlyTheDueTimeouts() {
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long delay = (long) Math.pow(2, random.nextDouble() * 28);
+            deadlines.add(delay);
+            wheel.schedule(delay, TimeUnit.MILLISECONDS, record(delay));
+        }
+
+        long t = 0;
+        while (wheel.size() > 0) {
+            t += 1 + (long) Math.pow(2, random.nextDouble() * 22);
+            advanceTo(t);
+            int due = 0;
+            for (long deadline : deadlines) {
+                if (deadline <= t) {
+                    due++;
+                }
+            }
+            assertEquals(due, fired.size());
+        }
+    }
+
+    @Test
+    public void TimeoutBeyondTheLastWheelStillFires() {
+        long days = TimeUnit.DAYS.toMillis(1000);
+        wheel.schedule(days, TimeUnit.MILLISECONDS, record(1));
+
+        advanceTo(days - 1);
+        assertTrue(fired.isEmpty());
+        advanceTo(days);
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    public void CancelledTimeoutDoesNotFire() {
+        TimingWheel.Timeout timeout = wheel.schedule(10, TimeUnit.MILLISECONDS, record(1));
+        wheel.schedule(20, TimeUnit.MILLISECONDS, record(2));
+
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertEquals(1, wheel.size());
+        advanceTo(30);
+
+        assertEquals(1, fired.size());
+        assertEquals(2L, (long) fired.get(0));
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void TimeoutCancelledByAnEarlierTaskOfTheSameTickDoesNotFire() {
+        final TimingWheel.Timeout[] second = new TimingWheel.Timeout[1];
+        wheel.schedule(10, TimeUnit.MILLISECONDS, new Action() {
+            @Override
+            public void doIt() {
+                second[0].cancel();
+            }
+        });
+        second[0] = wheel.schedule(10, TimeUnit.MILLISECONDS, record(2));
+
+        advanceTo(10);
+
+        assertTrue(fired.isEmpty());
+        assertTrue(second[0].isCancelled());
+    }
+}
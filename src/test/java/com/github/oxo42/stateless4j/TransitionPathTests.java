@@ -0,0 +1,132 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class TransitionPathTests {
+
+    private enum S {
+        ROOT, LEFT, LEFT_A, LEFT_B, RIGHT, RIGHT_A, OUTSIDE
+    }
+
+    private enum T {
+        TO_LEFT_A, TO_LEFT_B, TO_LEFT, TO_RIGHT_A, TO_ROOT, TO_OUTSIDE, REENTER
+    }
+
+    private final List<String> log = new ArrayList<>();
+
+    /*
+     *  @startuml
+     *  state ROOT {
+     *      state LEFT {
+     *          state LEFT_A
+     *          state LEFT_B
+     *      }
+     *      state RIGHT {
+     *          state RIGHT_A
+     *      }
+     *  }
+     *  state OUTSIDE
+     *  @enduml
+     */
+    private StateMachineConfig<S, T> config() {
+        StateMachineConfig<S, T> config = new StateMachineConfig<>();
+        for (S state : S.values()) {
+            config.configure(state)
+                    .onEntry(record("enter " + state))
+                    .onExit(record("exit " + state));
+        }
+        config.configure(S.LEFT).substateOf(S.ROOT);
+        config.configure(S.RIGHT).substateOf(S.ROOT);
+        config.configure(S.LEFT_A).substateOf(S.LEFT);
+        config.configure(S.LEFT_B).substateOf(S.LEFT);
+        config.configure(S.RIGHT_A).substateOf(S.RIGHT);
+
+        config.configure(S.ROOT)
+                .permit(T.TO_OUTSIDE, S.OUTSIDE)
+                .permit(T.TO_RIGHT_A, S.RIGHT_A);
+        config.configure(S.LEFT)
+                .permit(T.TO_LEFT_B, S.LEFT_B)
+                .permit(T.TO_ROOT, S.ROOT);
+        config.configure(S.LEFT_A)
+                .permit(T.TO_LEFT, S.LEFT)
+                .permitReentry(T.REENTER);
+        config.configure(S.OUTSIDE)
+                .permit(T.TO_LEFT_A, S.LEFT_A);
+        return config;
+    }
+
+    private Action record(final String entry) {
+        return new Action() {
+            @Override
+            public void doIt() {
+                log.add(entry);
+            }
+        };
+    }
+
+    private List<String> run(StateMachineConfig<S, T> config, S initial, T trigger) {
+        log.clear();
+        StateMachine<S, T> sm = new StateMachine<>(initial, config);
+        sm.fire(trigger);
+        return new ArrayList<>(log);
+    }
+
+    private void assertSameActions(S initial, T trigger) {
+        List<String> expected = run(config(), initial, trigger);
+        List<String> actual = run(config().freeze(), initial, trigger);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void SiblingTransition() {
+        assertSameActions(S.LEFT_A, T.TO_LEFT_B);
+        assertEquals(asList("exit LEFT_A", "enter LEFT_B"), run(config().freeze(), S.LEFT_A, T.TO_LEFT_B));
+    }
+
+    @Test
+    public void TransitionAcrossSubtrees() {
+        assertSameActions(S.LEFT_A, T.TO_RIGHT_A);
+        assertEquals(asList("exit LEFT_A", "exit LEFT", "enter RIGHT", "enter RIGHT_A"),
+                run(config().freeze(), S.LEFT_A, T.TO_RIGHT_A));
+    }
+
+    @Test
+    public void TransitionOutOfHierarchy() {
+        assertSameActions(S.LEFT_A, T.TO_OUTSIDE);
+        assertEquals(asList("exit LEFT_A", "exit LEFT", "exit ROOT", "enter OUTSIDE"),
+                run(config().freeze(), S.LEFT_A, T.TO_OUTSIDE));
+    }
+
+    @Test
+    public void TransitionIntoHierarchy() {
+        assertSameActions(S.OUTSIDE, T.TO_LEFT_A);
+        assertEquals(asList("exit OUTSIDE", "enter ROOT", "enter LEFT", "enter LEFT_A"),
+                run(config().freeze(), S.OUTSIDE, T.TO_LEFT_A));
+    }
+
+    @Test
+    public void TransitionToSuperstate() {
+        assertSameActions(S.LEFT_A, T.TO_LEFT);
+        assertSameActions(S.LEFT_A, T.TO_ROOT);
+        assertEquals(asList("exit LEFT_A", "exit LEFT"), run(config().freeze(), S.LEFT_A, T.TO_ROOT));
+    }
+
+    @Test
+    public void TransitionFromSuperstateToSubstate() {
+        assertSameActions(S.ROOT, T.TO_RIGHT_A);
+        assertEquals(asList("enter RIGHT", "enter RIGHT_A"), run(config().freeze(), S.ROOT, T.TO_RIGHT_A));
+    }
+
+    @Test
+    public void Reentry() {
+        assertSameActions(S.LEFT_A, T.REENTER);
+        assertEquals(asList("exit LEFT_A", "enter LEFT_A"), run(config().freeze(), S.LEFT_A, T.REENTER));
+    }
+}
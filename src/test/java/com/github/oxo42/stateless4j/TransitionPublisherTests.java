@@ -0,0 +1,132 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.transitions.TransitionEvent;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import static org.junit.Assert.*;
+
+public class TransitionPublisherTests {
+
+    private final Executor direct = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static StateMachineConfig<State, Trigger> config() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+        config.configure(State.B)
+                .permit(Trigger.Y, State.A);
+        return config;
+    }
+
+    private static class Recorder implements Flow.Subscriber<TransitionEvent<State, Trigger>> {
+
+        final List<TransitionEvent<State, Trigger>> events = new ArrayList<>();
+        final long demand;
+        Flow.Subscription subscription;
+        boolean completed;
+
+        Recorder(long demand) {
+            this.demand = demand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (demand > 0) {
+                subscription.request(demand);
+            }
+        }
+
+        @Override
+        public void onNext(TransitionEvent<State, Trigger> item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    public void TransitionsArePublished() {
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config());
+        TransitionPublisher<State, Trigger> publisher = new TransitionPublisher<>(direct, 16);
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        publisher.subscribe(recorder);
+        sm.setTrace(publisher);
+
+        sm.fire(Trigger.X);
+        sm.fire(Trigger.Y);
+        publisher.close();
+
+        assertEquals(2, recorder.events.size());
+        TransitionEvent<State, Trigger> first = recorder.events.get(0);
+        assertEquals(State.A, first.getSource());
+        assertEquals(State.B, first.getDestination());
+        assertEquals(Trigger.X, first.getTrigger());
+        assertEquals(-1, first.getInstance());
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void SlowSubscriberDropsInsteadOfBlocking() {
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config());
+        TransitionPublisher<State, Trigger> publisher = new TransitionPublisher<>(direct, 4);
+        Recorder recorder = new Recorder(0);
+        publisher.subscribe(recorder);
+        sm.setTrace(publisher);
+
+        for (int i = 0; i < 10; i++) {
+            sm.fire(Trigger.X);
+            sm.fire(Trigger.Y);
+        }
+
+        assertEquals(16, publisher.getDroppedCount());
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertEquals(4, recorder.events.size());
+    }
+
+    @Test
+    public void NothingIsPublishedWithoutSubscribers() {
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config());
+        TransitionPublisher<State, Trigger> publisher = new TransitionPublisher<>(direct, 1);
+        sm.setTrace(publisher);
+
+        sm.fire(Trigger.X);
+        sm.fire(Trigger.Y);
+
+        assertEquals(0, publisher.getDroppedCount());
+        assertEquals(0, publisher.getNumberOfSubscribers());
+    }
+
+    @Test
+    public void FleetEventsCarryTheInstance() {
+        StateMachineFleet<State, Trigger> fleet = new StateMachineFleet<>(8, State.A, config());
+        TransitionPublisher<State, Trigger> publisher = new TransitionPublisher<>(fleet, direct, 16);
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        publisher.subscribe(recorder);
+        fleet.setTrace(publisher);
+
+        fleet.fire(5, Trigger.X);
+        fleet.fire(2, Trigger.X);
+
+        assertEquals(2, recorder.events.size());
+        assertEquals(5, recorder.events.get(0).getInstance());
+        assertEquals(2, recorder.events.get(1).getInstance());
+    }
+}
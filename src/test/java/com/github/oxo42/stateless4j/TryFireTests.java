@@ -0,0 +1,74 @@
+package com.github.oxo42.stateless4j;
+
+import com.github.oxo42.stateless4j.delegates.Action2;
+import com.github.oxo42.stateless4j.triggers.TriggerWithParameters1;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TryFireTests {
+
+    private boolean unhandledActionCalled = false;
+
+    private StateMachine<State, Trigger> machine(boolean frozen) {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        config.configure(State.A)
+                .permit(Trigger.X, State.B)
+                .permitIf(Trigger.Y, State.C, InternalTriggerBehaviourTests.returnFalse)
+                .substateOf(State.C);
+        config.configure(State.C)
+                .ignore(Trigger.Z);
+        if (frozen) {
+            config.freeze();
+        }
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        sm.onUnhandledTrigger(new Action2<State, Trigger>() {
+            @Override
+            public void doIt(State state, Trigger trigger) {
+                unhandledActionCalled = true;
+            }
+        });
+        return sm;
+    }
+
+    @Test
+    public void ReportsEveryOutcome() {
+        for (boolean frozen : new boolean[]{false, true}) {
+            StateMachine<State, Trigger> sm = machine(frozen);
+
+            assertEquals(FireResult.IGNORED, sm.tryFire(Trigger.Z));
+            assertEquals(FireResult.GUARD_REJECTED, sm.tryFire(Trigger.Y));
+            assertEquals(State.A, sm.getState());
+            assertEquals(FireResult.HANDLED, sm.tryFire(Trigger.X));
+            assertEquals(State.B, sm.getState());
+            assertEquals(FireResult.UNHANDLED, sm.tryFire(Trigger.X));
+            assertFalse(unhandledActionCalled);
+        }
+    }
+
+    @Test
+    public void FireStillCallsUnhandledTriggerAction() {
+        StateMachine<State, Trigger> sm = machine(false);
+        sm.fire(Trigger.Y);
+        assertTrue(unhandledActionCalled);
+    }
+
+    @Test
+    public void UnhandledTriggerDoesNotThrow() {
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, new StateMachineConfig<State, Trigger>());
+        assertEquals(FireResult.UNHANDLED, sm.tryFire(Trigger.X));
+    }
+
+    @Test
+    public void ParameterisedTriggerIsHandled() {
+        StateMachineConfig<State, Trigger> config = new StateMachineConfig<>();
+        TriggerWithParameters1<String, Trigger> x = config.setTriggerParameters(Trigger.X, String.class);
+        config.configure(State.A)
+                .permit(Trigger.X, State.B);
+
+        StateMachine<State, Trigger> sm = new StateMachine<>(State.A, config);
+        assertEquals(FireResult.HANDLED, sm.tryFire(x, "arg"));
+        assertEquals(State.B, sm.getState());
+    }
+}